@@ -0,0 +1,109 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.test.ProviderTestCase2;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class BatchedDeleterTest extends ProviderTestCase2<StubProvider> {
+    private static final Executor DIRECT = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private int mCommitted;
+    private long[] mFailed;
+
+    public BatchedDeleterTest() {
+        super(StubProvider.class, StubProvider.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getProvider().add(1, 2, 3, 4, 5);
+    }
+
+    private BatchedDeleter deleter(String authority, long undoWindow) {
+        BatchedDeleter deleter = new BatchedDeleter(getMockContentResolver(), authority,
+                StubProvider.CONTENT_URI, undoWindow, DIRECT);
+        deleter.setCallback(new BatchedDeleter.Callback() {
+            public void onHiddenChanged() {
+            }
+
+            public void onCommitted(int count) {
+                mCommitted = count;
+                mDone.countDown();
+            }
+
+            public void onCommitFailed(long[] ids, Exception e) {
+                mFailed = ids;
+                mDone.countDown();
+            }
+        });
+        return deleter;
+    }
+
+    public void testDismissalsOfAWindowAreOneBatch() throws Exception {
+        BatchedDeleter deleter = deleter(StubProvider.AUTHORITY, 60000);
+        deleter.dismiss(2);
+        deleter.dismiss(4);
+        deleter.dismiss(5);
+        assertEquals(3, deleter.getPendingCount());
+        assertTrue(getProvider().contains(2));
+
+        deleter.commit();
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(3, mCommitted);
+        assertEquals(1, getProvider().getBatchCount());
+        assertFalse(getProvider().contains(2));
+        assertFalse(getProvider().contains(4));
+        assertFalse(getProvider().contains(5));
+        assertTrue(getProvider().contains(1));
+
+        // Hidden until the data is loaded again
+        assertEquals(3, deleter.getHiddenIds().length);
+        deleter.onDataReloaded();
+        assertEquals(0, deleter.getHiddenIds().length);
+    }
+
+    public void testWindowClosesByItself() throws Exception {
+        BatchedDeleter deleter = deleter(StubProvider.AUTHORITY, 50);
+        deleter.dismiss(1);
+        deleter.dismiss(3);
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(2, mCommitted);
+        assertEquals(1, getProvider().getBatchCount());
+        assertFalse(getProvider().contains(1));
+    }
+
+    public void testUndoDeletesNothing() throws Exception {
+        BatchedDeleter deleter = deleter(StubProvider.AUTHORITY, 60000);
+        deleter.dismiss(3);
+        deleter.dismiss(1);
+
+        long[] undone = deleter.undo();
+        assertEquals(2, undone.length);
+        assertEquals(0, deleter.getPendingCount());
+        assertEquals(0, deleter.getHiddenIds().length);
+
+        deleter.commit();
+        assertEquals(0, getProvider().getBatchCount());
+        assertTrue(getProvider().contains(1));
+        assertTrue(getProvider().contains(3));
+    }
+
+    public void testFailedBatchShowsItemsAgain() throws Exception {
+        BatchedDeleter deleter = deleter("unknown.authority", 60000);
+        deleter.dismiss(2);
+        deleter.commit();
+
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mFailed.length);
+        assertEquals(0, deleter.getHiddenIds().length);
+        assertTrue(getProvider().contains(2));
+    }
+}
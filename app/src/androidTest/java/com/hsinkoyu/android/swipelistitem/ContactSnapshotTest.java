@@ -0,0 +1,46 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.database.MatrixCursor;
+import junit.framework.TestCase;
+
+public class ContactSnapshotTest extends TestCase {
+    public void testRowsAreCopiedInPlaceOfTheirIds() {
+        MatrixCursor cursor = new MatrixCursor(new String[] {"_id", "name", "nickname"});
+        cursor.addRow(new Object[] {30, "Zo\u00eb", null});
+        cursor.addRow(new Object[] {10, "Anne-Marie Duval", "Annie"});
+
+        ContactSnapshot.Builder builder = new ContactSnapshot.Builder(new long[] {10, 20, 30}, 2);
+        cursor.moveToFirst();
+        builder.setRow(2, cursor, 1);
+        cursor.moveToNext();
+        builder.setRow(0, cursor, 1);
+        cursor.close();
+        ContactSnapshot snapshot = builder.build();
+
+        assertEquals(3, snapshot.getCount());
+        assertEquals(20, snapshot.getId(1));
+        assertEquals("Anne-Marie Duval", snapshot.getString(0, 0));
+        assertEquals("Annie", snapshot.getString(0, 1));
+        assertEquals("Zo\u00eb", new String(snapshot.getPool(), snapshot.getStart(2, 0), snapshot.getLength(2, 0)));
+
+        // Not set, or null in the cursor
+        assertTrue(snapshot.isNull(1, 0));
+        assertNull(snapshot.getString(1, 0));
+        assertTrue(snapshot.isNull(2, 1));
+        assertEquals(0, snapshot.getLength(2, 1));
+    }
+
+    public void testPoolGrows() {
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            longName.append((char) ('a' + i % 26));
+        }
+        MatrixCursor cursor = new MatrixCursor(new String[] {"_id", "name"});
+        cursor.addRow(new Object[] {1, longName.toString()});
+        cursor.moveToFirst();
+
+        ContactSnapshot snapshot = new ContactSnapshot.Builder(new long[] {1}, 1).setRow(0, cursor, 1).build();
+        assertEquals(longName.toString(), snapshot.getString(0, 0));
+        assertEquals(200, snapshot.getPool().length);
+    }
+}
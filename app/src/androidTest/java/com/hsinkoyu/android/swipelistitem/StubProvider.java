@@ -0,0 +1,81 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+/**
+ * A provider of bare ids, counting the batches it is given.
+ */
+public class StubProvider extends ContentProvider {
+    static final String AUTHORITY = "com.hsinkoyu.android.swipelistitem.stub";
+    static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/items");
+
+    private final TreeSet<Long> mIds = new TreeSet<Long>();
+    private int mBatches;
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    synchronized void add(long... ids) {
+        for (long id : ids) {
+            mIds.add(id);
+        }
+    }
+
+    synchronized boolean contains(long id) {
+        return mIds.contains(id);
+    }
+
+    synchronized int getBatchCount() {
+        return mBatches;
+    }
+
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        synchronized (this) {
+            mBatches++;
+        }
+        return super.applyBatch(operations);
+    }
+
+    @Override
+    public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        MatrixCursor cursor = new MatrixCursor(new String[] {"_id"});
+        for (Long id : mIds) {
+            cursor.addRow(new Object[] {id});
+        }
+        return cursor;
+    }
+
+    @Override
+    public synchronized int delete(Uri uri, String selection, String[] selectionArgs) {
+        return mIds.remove(ContentUris.parseId(uri)) ? 1 : 0;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+}
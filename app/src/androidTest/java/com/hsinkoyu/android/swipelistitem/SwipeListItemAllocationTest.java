@@ -0,0 +1,81 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.Context;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.ListView;
+
+/**
+ * A drag through SwipeListItem, once started, must not allocate.
+ */
+@SuppressWarnings("deprecation")
+public class SwipeListItemAllocationTest extends InstrumentationTestCase {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 200;
+    private static final int WARMUP_MOVES = 20; // enough to decide the direction and show the pane
+    private static final int MOVES = 10000;
+
+    private static final SwipeListItem.OnSwipeListener IDLE = new SwipeListItem.OnSwipeListener() {
+        public void onReady() {}
+        public void onStart(int direction, int distance) {}
+        public void onMove(int direction, int distance) {}
+        public void onGoCancelling(int direction, int distance) {}
+        public void onCancelled(int direction, int distance) {}
+        public void onGoSwiping(int direction, int distance) {}
+        public void onSwiped(int direction, int distance) {}
+    };
+
+    private int mAllocations;
+
+    private int drag(final int moveDispatchMode) throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            public void run() {
+                Context context = getInstrumentation().getTargetContext();
+                ListView listView = new ListView(context);
+                View row = LayoutInflater.from(context).inflate(R.layout.contact_list_item, listView, false);
+                row.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                row.layout(0, 0, WIDTH, HEIGHT);
+
+                SwipeListItem item = new SwipeListItem(context, row, listView, SwipeListItem.SWIPE_LEFT,
+                        SwipeListItem.TYPE_PULL_OUT, null, IDLE);
+                item.setWidth(WIDTH);
+                item.setOffsetMode(SwipeListItem.OFFSET_TRANSLATION);
+                item.setMoveDispatchMode(moveDispatchMode);
+
+                MotionEvent event = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, WIDTH / 2, HEIGHT / 2, 0);
+                item.onTouch(row, event);
+                event.setAction(MotionEvent.ACTION_MOVE);
+                for (int i = 1; i <= WARMUP_MOVES; i++) {
+                    event.setLocation(WIDTH / 2 - i * 5, HEIGHT / 2);
+                    item.onTouch(row, event);
+                }
+
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+                for (int i = 0; i < MOVES; i++) {
+                    event.setLocation(WIDTH / 2 - WARMUP_MOVES * 5 - (i % 300), HEIGHT / 2 + (i & 3));
+                    item.onTouch(row, event);
+                }
+                mAllocations = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+
+                event.setAction(MotionEvent.ACTION_CANCEL);
+                item.onTouch(row, event);
+                event.recycle();
+            }
+        });
+        return mAllocations;
+    }
+
+    public void testDragPerEventAllocatesNothing() throws Throwable {
+        assertEquals(0, drag(SwipeListItem.MOVE_DISPATCH_PER_EVENT));
+    }
+
+    public void testDragPerFrameAllocatesNothing() throws Throwable {
+        assertEquals(0, drag(SwipeListItem.MOVE_DISPATCH_PER_FRAME));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import java.util.Arrays;
+
+/**
+ * The sections of a list sorted alphabetically, for fast scrolling: one per letter of an
+ * alphabet, such as "#ABCDEFGHIJKLMNOPQRSTUVWXYZ", whether or not any row falls in it, so the
+ * sections never change with the rows. A row is in the section of the first letter of its sort
+ * key, regardless of case and diacritics, or in the first section if that letter is in none.
+ *
+ * The section of each row is worked out once, off the main thread, and kept in a byte; the first
+ * position of each section is then found in a single pass over the positions.
+ */
+public final class AlphabetSections {
+    private final String mAlphabet;
+    private final String[] mSections;
+
+    /**
+     * @param alphabet one letter per section, upper case. The first one is for the keys beginning
+     * with none of the others.
+     */
+    public AlphabetSections(String alphabet) {
+        if (alphabet.length() == 0 || alphabet.length() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid alphabet " + alphabet);
+        }
+
+        mAlphabet = alphabet;
+        mSections = new String[alphabet.length()];
+        for (int i = 0; i < mSections.length; i++) {
+            mSections[i] = String.valueOf(alphabet.charAt(i));
+        }
+    }
+
+    /**
+     * @return the titles of the sections, always the same array.
+     */
+    public String[] getSections() {
+        return mSections;
+    }
+
+    public int getSectionCount() {
+        return mSections.length;
+    }
+
+    /**
+     * @param key to sort the row by, or null.
+     * @return the section of a row with this sort key.
+     */
+    public int sectionOf(CharSequence key) {
+        if (key == null || key.length() == 0) {
+            return 0;
+        }
+
+        char c = key.charAt(0);
+        if (c >= 0x80 || !Character.isLetter(c)) {
+            // A few chars are enough for the first letter once diacritics are dropped
+            String normalized = ContactSearchIndex.normalize(key.subSequence(0, Math.min(key.length(), 4)));
+            if (normalized.length() == 0) {
+                return 0;
+            }
+            c = normalized.charAt(0);
+        }
+        int section = mAlphabet.indexOf(Character.toUpperCase(c));
+        return (section > 0) ? section : 0;
+    }
+
+    /**
+     * @param rowSections section of each row.
+     * @param rows row at each position, or null for a row at each position.
+     * @param count of the positions.
+     * @return the first position of each section. An empty one gets the position of the next
+     * section that is not, or count past the last one.
+     */
+    public int[] getPositions(byte[] rowSections, int[] rows, int count) {
+        int[] positions = new int[mSections.length];
+        Arrays.fill(positions, -1);
+        for (int position = 0; position < count; position++) {
+            int section = rowSections[(rows != null) ? rows[position] : position];
+            if (positions[section] < 0) {
+                positions[section] = position;
+            }
+        }
+
+        int next = count;
+        for (int section = positions.length - 1; section >= 0; section--) {
+            if (positions[section] < 0) {
+                positions[section] = next;
+            } else {
+                next = positions[section];
+            }
+        }
+        return positions;
+    }
+}
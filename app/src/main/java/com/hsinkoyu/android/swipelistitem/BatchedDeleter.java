@@ -0,0 +1,231 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Deletes dismissed items from a content provider in batches. A dismissal opens an undo window,
+ * and every dismissal made before it closes is deleted in a single applyBatch(), on a background
+ * thread. So the provider notifies its observers, and the list queries again, once per batch
+ * instead of once per item.
+ *
+ * Until the data is reloaded without them, getHiddenIds() tells which items to keep out of sight,
+ * to a ContactPager. All methods are meant to be called on the main thread, and
+ * so are the callbacks.
+ */
+public class BatchedDeleter {
+    private static final String TAG = "BatchedDeleter";
+
+    public interface Callback {
+        /**
+         * The hidden ids changed: dismissed, undone, or back after a failure.
+         */
+        public void onHiddenChanged();
+
+        /**
+         * The ids dismissed during a window have been deleted.
+         */
+        public void onCommitted(int count);
+
+        /**
+         * The ids could not be deleted, and are not hidden anymore.
+         */
+        public void onCommitFailed(long[] ids, Exception e);
+    }
+
+    private final ContentResolver mResolver;
+    private final String mAuthority;
+    private final Uri mContentUri;
+    private final long mUndoWindow;
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private Callback mCallback;
+
+    // Sorted; dismissed in the open window, being deleted, deleted but maybe still loaded
+    private long[] mPending = new long[0];
+    private long[] mInFlight = new long[0];
+    private long[] mDeleted = new long[0];
+
+    private final Runnable mCommit = new Runnable() {
+        public void run() {
+            commit();
+        }
+    };
+
+    /**
+     * @param contentUri items are deleted at their id appended to it.
+     * @param undoWindowMillis how long after the last dismissal the batch is committed.
+     */
+    public BatchedDeleter(ContentResolver resolver, String authority, Uri contentUri, long undoWindowMillis) {
+        this(resolver, authority, contentUri, undoWindowMillis, AsyncTask.SERIAL_EXECUTOR);
+    }
+
+    public BatchedDeleter(ContentResolver resolver, String authority, Uri contentUri, long undoWindowMillis, Executor executor) {
+        if (resolver == null) {
+            throw new IllegalArgumentException("Null resolver");
+        }
+
+        mResolver = resolver;
+        mAuthority = authority;
+        mContentUri = contentUri;
+        mUndoWindow = undoWindowMillis;
+        mExecutor = executor;
+    }
+
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Hide the item now, and delete it once the undo window closes. Each dismissal keeps the
+     * window open a little longer.
+     */
+    public void dismiss(long id) {
+        mPending = add(mPending, id);
+        mHandler.removeCallbacks(mCommit);
+        mHandler.postDelayed(mCommit, mUndoWindow);
+        notifyHiddenChanged();
+    }
+
+    /**
+     * @return the number of dismissals that can still be undone.
+     */
+    public int getPendingCount() {
+        return mPending.length;
+    }
+
+    /**
+     * Cancel the dismissals of the open window.
+     *
+     * @return the ids shown again.
+     */
+    public long[] undo() {
+        long[] ids = mPending;
+
+        mHandler.removeCallbacks(mCommit);
+        mPending = new long[0];
+        if (ids.length > 0) {
+            notifyHiddenChanged();
+        }
+        return ids;
+    }
+
+    /**
+     * Close the undo window now, as when leaving the screen.
+     */
+    public void commit() {
+        mHandler.removeCallbacks(mCommit);
+        if (mPending.length == 0) {
+            return;
+        }
+
+        final long[] ids = mPending;
+        mPending = new long[0];
+        mInFlight = addAll(mInFlight, ids);
+
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>(ids.length);
+        for (long id : ids) {
+            operations.add(ContentProviderOperation.newDelete(ContentUris.withAppendedId(mContentUri, id)).build());
+        }
+
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                Exception error = null;
+                try {
+                    mResolver.applyBatch(mAuthority, operations);
+                } catch (Exception e) {
+                    error = e;
+                }
+
+                final Exception result = error;
+                mHandler.post(new Runnable() {
+                    public void run() {
+                        onBatchDone(ids, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the ids to keep out of sight, sorted ascending.
+     */
+    public long[] getHiddenIds() {
+        return addAll(addAll(mPending, mInFlight), mDeleted);
+    }
+
+    /**
+     * To be called when the data has been loaded again: the deleted items are not in it anymore.
+     * Batches still running are kept hidden.
+     */
+    public void onDataReloaded() {
+        mDeleted = new long[0];
+    }
+
+    private void onBatchDone(long[] ids, Exception error) {
+        mInFlight = removeAll(mInFlight, ids);
+        if (error == null) {
+            mDeleted = addAll(mDeleted, ids);
+            if (mCallback != null) {
+                mCallback.onCommitted(ids.length);
+            }
+        } else {
+            notifyHiddenChanged();
+            if (mCallback != null) {
+                mCallback.onCommitFailed(ids, error);
+            }
+        }
+    }
+
+    private void notifyHiddenChanged() {
+        if (mCallback != null) {
+            mCallback.onHiddenChanged();
+        }
+    }
+
+    private static long[] add(long[] ids, long id) {
+        return addAll(ids, new long[] {id});
+    }
+
+    private static long[] addAll(long[] ids, long[] more) {
+        if (more.length == 0) {
+            return ids;
+        }
+
+        long[] merged = Arrays.copyOf(ids, ids.length + more.length);
+        System.arraycopy(more, 0, merged, ids.length, more.length);
+        Arrays.sort(merged);
+
+        // Drop duplicates
+        int size = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (size == 0 || merged[size - 1] != merged[i]) {
+                merged[size++] = merged[i];
+            }
+        }
+        return (size == merged.length) ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private static long[] removeAll(long[] ids, long[] removed) {
+        long[] kept = new long[ids.length];
+        int size = 0;
+        for (long id : ids) {
+            if (Arrays.binarySearch(removed, id) < 0) {
+                kept[size++] = id;
+            }
+        }
+        return Arrays.copyOf(kept, size);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import java.util.Arrays;
+
+/**
+ * The difference between two ordered lists of rows, matched by id: rows inserted, removed, moved
+ * relative to the others, and changed in content, as told by a version such as the last update
+ * time. Computed in O(n log n) with primitive arrays only, so it can run on a background thread
+ * over a whole address book.
+ */
+public final class ContactDiff {
+    private final int[] mOldRows; // of each new row, -1 if inserted
+    private final boolean[] mChanged; // of each new row
+    private final int mInserted;
+    private final int mRemoved;
+    private final int mMoved;
+    private final int mChangedCount;
+
+    private ContactDiff(int[] oldRows, boolean[] changed, int inserted, int removed, int moved, int changedCount) {
+        mOldRows = oldRows;
+        mChanged = changed;
+        mInserted = inserted;
+        mRemoved = removed;
+        mMoved = moved;
+        mChangedCount = changedCount;
+    }
+
+    /**
+     * @param oldVersions of the old rows, or null if content changes are not to be told.
+     * @param newVersions of the new rows, or null likewise.
+     */
+    public static ContactDiff compute(long[] oldIds, long[] oldVersions, long[] newIds, long[] newVersions) {
+        int[] sorted = sortedRows(oldIds);
+        long[] sortedIds = new long[oldIds.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sortedIds[i] = oldIds[sorted[i]];
+        }
+
+        int[] oldRows = new int[newIds.length];
+        boolean[] changed = new boolean[newIds.length];
+        int kept = 0;
+        int changedCount = 0;
+        for (int row = 0; row < newIds.length; row++) {
+            int found = Arrays.binarySearch(sortedIds, newIds[row]);
+            if (found < 0) {
+                oldRows[row] = -1;
+                continue;
+            }
+
+            int oldRow = sorted[found];
+            oldRows[row] = oldRow;
+            kept++;
+            if (oldVersions != null && newVersions != null && oldVersions[oldRow] != newVersions[row]) {
+                changed[row] = true;
+                changedCount++;
+            }
+        }
+
+        // The rows kept in order are the longest increasing run of their old rows; the others moved.
+        int moved = kept - longestIncreasing(oldRows);
+
+        return new ContactDiff(oldRows, changed, newIds.length - kept, oldIds.length - kept, moved, changedCount);
+    }
+
+    /**
+     * @return whether nothing was inserted, removed, moved nor changed.
+     */
+    public boolean isEmpty() {
+        return mInserted == 0 && mRemoved == 0 && mMoved == 0 && mChangedCount == 0;
+    }
+
+    public int getInsertedCount() {
+        return mInserted;
+    }
+
+    public int getRemovedCount() {
+        return mRemoved;
+    }
+
+    public int getMovedCount() {
+        return mMoved;
+    }
+
+    public int getChangedCount() {
+        return mChangedCount;
+    }
+
+    /**
+     * @return the old row of a new row, or -1 if it was inserted.
+     */
+    public int getOldRow(int newRow) {
+        return mOldRows[newRow];
+    }
+
+    /**
+     * @return whether the content of a new row, not inserted, changed.
+     */
+    public boolean isChanged(int newRow) {
+        return mChanged[newRow];
+    }
+
+    @Override
+    public String toString() {
+        return "+" + mInserted + " -" + mRemoved + " ~" + mMoved + " *" + mChangedCount;
+    }
+
+    /*
+     * Rows ordered by id, by a merge sort on the row indexes.
+     */
+    private static int[] sortedRows(long[] ids) {
+        int[] rows = new int[ids.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        int[] work = new int[ids.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int from = 0; from < rows.length; from += 2 * width) {
+                int mid = Math.min(from + width, rows.length);
+                int to = Math.min(from + 2 * width, rows.length);
+                int i = from, j = mid, k = from;
+                while (i < mid && j < to) {
+                    work[k++] = (ids[rows[j]] < ids[rows[i]]) ? rows[j++] : rows[i++];
+                }
+                while (i < mid) {
+                    work[k++] = rows[i++];
+                }
+                while (j < to) {
+                    work[k++] = rows[j++];
+                }
+            }
+            int[] swap = rows;
+            rows = work;
+            work = swap;
+        }
+        return rows;
+    }
+
+    /*
+     * Length of the longest strictly increasing subsequence of the values not negative.
+     */
+    private static int longestIncreasing(int[] values) {
+        int[] tails = new int[values.length];
+        int length = 0;
+        for (int value : values) {
+            if (value < 0) {
+                continue;
+            }
+            int at = Arrays.binarySearch(tails, 0, length, value);
+            if (at < 0) {
+                at = -at - 1;
+            }
+            tails[at] = value;
+            if (at == length) {
+                length++;
+            }
+        }
+        return length;
+    }
+}
@@ -1,69 +1,289 @@
 package com.hsinkoyu.android.swipelistitem;
 
-import android.app.ListActivity;
 import android.content.Context;
-import android.database.Cursor;
+import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.SimpleCursorAdapter;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.SectionIndexer;
+import android.widget.TextView;
 
 /**
  * Created by HsinkoYu on 2016/9/2.
+ *
+ * Swiping is handled for the whole list by a SwipeCoordinator attached to the ListView, so
+ * there is nothing to wire per list item here. It only needs to know which contact a view
+ * is bound to, to give it back its own swipe state.
+ *
+ * The contacts come a page at a time from a ContactPager. A row not loaded yet is bound empty,
+ * and bound again once its page is in. Dismissed contacts are hidden by the pager. Text is bound
+ * straight from the chars of the page's snapshot, without a String per row. Photos, if any, are
+ * loaded by a PhotoLoader; a row bound to another contact drops the photo it was waiting for.
+ * Names, if shown in a NameView, are laid out by a TextLayoutCache, ahead for the next few rows
+ * in the direction of scrolling.
+ *
+ * Sections for fast scrolling are those of the pager, looked up without going to the provider.
+ *
+ * With a ContactSearchIndex, filter() narrows the contacts shown as the query is typed, each
+ * longer query searching only the result of the previous one.
+ *
+ * A row still showing the same contact out of the same snapshot is not bound again, so a reload
+ * or a page loaded elsewhere leaves the unchanged rows, and any swipe going on in them, alone.
  */
-public class ContactListAdapter extends SimpleCursorAdapter {
+public class ContactListAdapter extends BaseAdapter implements SectionIndexer {
     private final String TAG = "ContactListAdapter";
 
-    private SwipeListItem mLastSwipeItem;
+    private static final int PREFETCH_ROWS = 4; // names laid out ahead of the row being bound
 
-    public ContactListAdapter(Context context, int layout, Cursor c, String[] from, int[] to, int flags) {
-        super(context, layout, c, from, to, flags);
+    /*
+     * What a view shows, kept as its tag.
+     */
+    private static final class Binding {
+        long id = AdapterView.INVALID_ROW_ID;
+        ContactSnapshot rows;
+        int row;
+    }
+
+    private final LayoutInflater mInflater;
+    private final int mLayout;
+    private final int[] mFrom; // columns of the pager's projection
+    private final int[] mTo;
+
+    private SwipeCoordinator mSwipeCoordinator;
+    private ContactPager mContacts;
+    private RowPool mRowPool;
+    private PhotoLoader mPhotoLoader;
+    private int mPhotoColumn;
+    private int mPhotoView;
+    private TextLayoutCache mNameLayouts;
+    private int mNameColumn;
+    private int mNameView;
+    private int mLastPosition;
+    private ContactSearchIndex mSearchIndex;
+    private ContactSearchIndex.Result mFilterResult;
+    private String mFilterQuery = "";
+
+    /**
+     * @param from columns of the projection, bound as text to the views of the same index in to.
+     */
+    public ContactListAdapter(Context context, int layout, int[] from, int[] to) {
+        if (from.length != to.length) {
+            throw new IllegalArgumentException("Columns and views do not match");
+        }
+
+        mInflater = LayoutInflater.from(context);
+        mLayout = layout;
+        mFrom = from;
+        mTo = to;
+    }
+
+    public void setSwipeCoordinator(SwipeCoordinator coordinator) {
+        mSwipeCoordinator = coordinator;
+    }
+
+    /**
+     * Take new rows from this pool first, inflating them only once it is empty.
+     */
+    public void setRowPool(RowPool pool) {
+        mRowPool = pool;
+    }
+
+    /**
+     * Show photos in a view of the rows.
+     *
+     * @param column of the projection holding the uri of the photo.
+     * @param viewId of the ImageView.
+     */
+    public void setPhotoLoader(PhotoLoader loader, int column, int viewId) {
+        mPhotoLoader = loader;
+        mPhotoColumn = column;
+        mPhotoView = viewId;
+    }
+
+    /**
+     * Show names in a NameView of the rows, laid out by this cache.
+     *
+     * @param column of the projection holding the name.
+     * @param viewId of the NameView.
+     */
+    public void setNameLayouts(TextLayoutCache cache, int column, int viewId) {
+        mNameLayouts = cache;
+        mNameColumn = column;
+        mNameView = viewId;
+    }
+
+    /**
+     * Search the contacts in this index from now on, as when it has been built again.
+     */
+    public void setSearchIndex(ContactSearchIndex index) {
+        mSearchIndex = index;
+        mFilterResult = null;
+        applyFilter();
+    }
+
+    /**
+     * Only show the contacts matching this query, as typed; all of them for an empty one. Until
+     * a search index is set, the query is only remembered.
+     */
+    public void filter(CharSequence query) {
+        mFilterQuery = query.toString();
+        applyFilter();
+    }
+
+    private void applyFilter() {
+        if (mSearchIndex == null || mContacts == null) {
+            return;
+        }
+        mFilterResult = mSearchIndex.search(mFilterQuery, mFilterResult);
+        mContacts.setFilter(mFilterResult);
+    }
+
+    /**
+     * Show the contacts of this pager, or none with null.
+     */
+    public void setContacts(ContactPager contacts) {
+        mContacts = contacts;
+        mFilterResult = null;
+        applyFilter();
+        notifyDataSetChanged();
     }
 
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        final View thisView = super.newView(context, cursor, parent);
-        final SwipeListItem thisItem = SwipeListItem.accept(context, thisView, ((ListActivity)context).getListView(), SwipeListItem.SWIPE_LEFT, SwipeListItem.TYPE_PULL_OUT, null, null);
-
-        thisItem.setOnSwipeListener(new SwipeListItem.OnSwipeListener() {
-            // touch down event
-            public void onReady() {
-                if (mLastSwipeItem != null && mLastSwipeItem != thisItem) {
-                    mLastSwipeItem.restoreView();
-                }
-                mLastSwipeItem = thisItem;
-            }
+    public int getCount() {
+        return (mContacts != null) ? mContacts.getCount() : 0;
+    }
 
-            public void onStart(int direction, int distance) {
-                //Log.v(TAG, "SwipeListItem onStart() direction = " + direction + " distance = " + distance);
+    /**
+     * @return the name of the contact, or its first column bound to a TextView; null without either.
+     */
+    @Override
+    public Object getItem(int position) {
+        if (mNameLayouts != null) {
+            return mContacts.getString(position, mNameColumn);
+        }
+        return (mFrom.length > 0) ? mContacts.getString(position, mFrom[0]) : null;
+    }
 
-            }
+    @Override
+    public long getItemId(int position) {
+        return mContacts.getId(position);
+    }
 
-            public void onMove(int direction, int distance) {
-                //Log.v(TAG, "SwipeListItem onMove() direction = " + direction + " distance = " + distance);
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
 
-            }
+    @Override
+    public Object[] getSections() {
+        return (mContacts != null) ? mContacts.getSections() : new String[0];
+    }
 
-            public void onGoCancelling(int direction, int distance) {
-                //Log.v(TAG, "SwipeListItem onGoCancelling() direction = " + direction + " distance = " + distance);
+    @Override
+    public int getPositionForSection(int sectionIndex) {
+        return (mContacts != null) ? mContacts.getPositionForSection(sectionIndex) : 0;
+    }
 
-            }
+    @Override
+    public int getSectionForPosition(int position) {
+        return (mContacts != null) ? mContacts.getSectionForPosition(position) : 0;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = (convertView != null) ? convertView : newView(parent);
+        bindView(view, position);
+        if (mNameLayouts != null) {
+            prefetchNames(position);
+        }
+        return view;
+    }
+
+    private View newView(ViewGroup parent) {
+        View view = (mRowPool != null) ? mRowPool.obtain() : null;
+        return (view != null) ? view : mInflater.inflate(mLayout, parent, false);
+    }
 
-            public void onCancelled(int direction, int distance) {
-                //Log.v(TAG, "SwipeListItem onCancelled() direction = " + direction + " distance = " + distance);
+    private void bindView(View view, int position) {
+        Binding binding = (Binding) view.getTag(R.id.contact_binding);
+        if (binding == null) {
+            binding = new Binding();
+            view.setTag(R.id.contact_binding, binding);
+        }
 
+        long id = mContacts.getId(position);
+        ContactSnapshot rows = mContacts.getRows(position);
+        int row = mContacts.getRowInRows(position);
+        if (binding.id == id && binding.rows == rows && binding.row == row) {
+            return;
+        }
+        binding.id = id;
+        binding.rows = rows;
+        binding.row = row;
+
+        for (int i = 0; i < mFrom.length; i++) {
+            TextView text = (TextView) view.findViewById(mTo[i]);
+            if (rows == null) {
+                // Empty until loaded
+                text.setText(null);
+            } else {
+                int column = mFrom[i] - 1; // no id in the snapshot
+                text.setText(rows.getPool(), rows.getStart(row, column), rows.getLength(row, column));
             }
+        }
 
-            public void onGoSwiping(int direction, int distance) {
-                //Log.v(TAG, "SwipeListItem onGoSwiping() direction = " + direction + " distance = " + distance);
+        if (mNameLayouts != null) {
+            NameView name = (NameView) view.findViewById(mNameView);
+            int column = mNameColumn - 1;
+            if (rows == null || rows.isNull(row, column)) {
+                name.clearText();
+            } else {
+                name.setText(mNameLayouts, id, mContacts.getVersion(position),
+                        rows.getPool(), rows.getStart(row, column), rows.getLength(row, column));
+            }
+        }
 
+        if (mPhotoLoader != null) {
+            ImageView photo = (ImageView) view.findViewById(mPhotoView);
+            int column = mPhotoColumn - 1;
+            if (rows == null || rows.isNull(row, column)) {
+                mPhotoLoader.load(photo, null, 0, 0, PhotoLoader.VERSION_UNKNOWN);
+            } else {
+                mPhotoLoader.load(photo, rows.getPool(), rows.getStart(row, column), rows.getLength(row, column),
+                        mContacts.getVersion(position));
             }
+        }
+
+        if (mSwipeCoordinator != null) {
+            mSwipeCoordinator.onBindView(view, id);
+        }
+    }
 
-            public void onSwiped(int direction, int distance) {
-                //Log.v(TAG, "SwipeListItem onSwiped() direction = " + direction + " distance = " + distance);
+    /*
+     * Lay out the names of the next rows loaded, in the direction the list goes.
+     */
+    private void prefetchNames(int position) {
+        int step = (position >= mLastPosition) ? 1 : -1;
+        mLastPosition = position;
 
+        int column = mNameColumn - 1;
+        for (int i = 1; i <= PREFETCH_ROWS; i++) {
+            int ahead = position + i * step;
+            if (ahead < 0 || ahead >= getCount()) {
+                break;
             }
-        });
 
-        return thisView;
+            ContactSnapshot rows = mContacts.getRows(ahead);
+            if (rows == null) {
+                continue;
+            }
+            int row = mContacts.getRowInRows(ahead);
+            if (!rows.isNull(row, column)) {
+                mNameLayouts.prefetch(mContacts.getId(ahead), mContacts.getVersion(ahead),
+                        rows.getPool(), rows.getStart(row, column), rows.getLength(row, column));
+            }
+        }
     }
 }
@@ -0,0 +1,706 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+import android.util.Log;
+import android.util.SparseArray;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads contacts a page at a time, off the main thread, around the positions being shown.
+ *
+ * The first page is queried on its own with a limit, so it shows as soon as that small query
+ * returns whatever the size of the address book. The ids of all rows, in order, come next in a
+ * single narrow query; from then on the count is known, hidden ids are skipped by position, and
+ * each page is queried by the ids it holds. Rows not loaded yet read as placeholders: their id is
+ * known but their values are null. Pages far from the last position asked for are evicted.
+ *
+ * A page is copied out of its cursor on the background thread into a ContactSnapshot, and the
+ * cursor closed there; binding reads the snapshot by index.
+ *
+ * On a reload, the new ids are diffed with the old ones on the background thread, by id and by
+ * the version column if one is set. Rows already loaded are then carried over to their new
+ * positions, still in the snapshots they came in, and only pages with new or changed rows are
+ * queried again. A reload that changed nothing is not even notified.
+ *
+ * A filter, such as the rows found by a ContactSearchIndex, narrows the rows shown without a query.
+ *
+ * With a section column, the section of each row comes along its id in the same query, one byte
+ * per row, and the first position of each section is found again whenever the positions are; so
+ * looking a section or a position up never goes to the provider.
+ *
+ * The first column of the projection must be the id. All methods are meant to be called on the
+ * main thread, and so are the callbacks.
+ */
+public class ContactPager {
+    private static final String TAG = "ContactPager";
+    private static final boolean DEBUG = false;
+
+    public interface Callback {
+        /**
+         * The ids of all rows have been loaded, again for a reload. Hidden ids deleted since are
+         * gone from them. Called before onChanged(), if they changed at all.
+         *
+         * @param diff from the rows loaded before, null for the first load.
+         */
+        public void onReloaded(ContactDiff diff);
+
+        /**
+         * The rows, their count or their order changed.
+         */
+        public void onChanged();
+
+        /**
+         * Rows already counted have been loaded and can be shown in place of their placeholders.
+         */
+        public void onRowsLoaded();
+    }
+
+    public interface OnSearchIndexListener {
+        /**
+         * The names of all rows have been indexed.
+         */
+        public void onSearchIndexBuilt(ContactSearchIndex index);
+    }
+
+    private static final class Page {
+        final long[] ids;
+        final ContactSnapshot[] rows; // holding each row, null until known
+        final int[] rowsIndexes; // of each row in its snapshot
+        boolean loaded; // rows carried over a reload may be known but not loaded
+
+        Page(long[] ids) {
+            this.ids = ids;
+            this.rows = new ContactSnapshot[ids.length];
+            this.rowsIndexes = new int[ids.length];
+        }
+
+        void set(ContactSnapshot snapshot) {
+            for (int i = 0; i < ids.length; i++) {
+                rows[i] = snapshot;
+                rowsIndexes[i] = i;
+            }
+            loaded = true;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String mSortOrder;
+    private final int mPageSize;
+    private final int mMaxPages;
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private Callback mCallback;
+    private String mVersionColumn;
+    private String mSectionColumn;
+    private AlphabetSections mSections;
+
+    private int mGeneration; // loads of an older generation are dropped
+    private long[] mIds; // of all rows, or of the first page until they are loaded
+    private long[] mVersions; // of all rows, null until they are loaded
+    private byte[] mRowSections; // of all rows, null until they are loaded or without sections
+    private final SparseArray<Page> mPages = new SparseArray<Page>();
+
+    private long[] mHiddenIds = new long[0];
+    private long[] mFilterIds; // null for no filter
+    private ContactSearchIndex.Result mFilterResult; // null for no filter
+    private ContactSearchIndex mLinedUpIndex; // last index checked against mLinedUpIds
+    private long[] mLinedUpIds;
+    private boolean mLinedUp; // whether the rows of mLinedUpIndex are those of mLinedUpIds
+    private int[] mPositions; // row of each visible position, null if nothing is hidden; not to be changed
+    private int mCount;
+    private int[] mSectionPositions; // first position of each section, null without row sections
+
+    // Page of the last position asked for; background loads of pages far from it are skipped.
+    private volatile int mFocus;
+
+    /**
+     * @param pageSize rows per page.
+     * @param maxPages pages kept in memory at most.
+     */
+    public ContactPager(ContentResolver resolver, Uri uri, String[] projection, String selection, String sortOrder,
+                        int pageSize, int maxPages) {
+        this(resolver, uri, projection, selection, sortOrder, pageSize, maxPages, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    public ContactPager(ContentResolver resolver, Uri uri, String[] projection, String selection, String sortOrder,
+                        int pageSize, int maxPages, Executor executor) {
+        if (pageSize <= 0 || maxPages < 3) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize + " or max pages " + maxPages);
+        }
+
+        mResolver = resolver;
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSortOrder = sortOrder;
+        mPageSize = pageSize;
+        mMaxPages = maxPages;
+        mExecutor = executor;
+    }
+
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Tell changed rows on a reload by this column too, such as the last update time, besides
+     * their id. To be set before the first load.
+     */
+    public void setVersionColumn(String column) {
+        mVersionColumn = column;
+    }
+
+    /**
+     * Tell the section of each row by the first letter of this column, such as the sort key. To
+     * be set before the first load.
+     */
+    public void setSectionColumn(String column, AlphabetSections sections) {
+        mSectionColumn = column;
+        mSections = sections;
+    }
+
+    /**
+     * Load the rows, or load them again as when the provider notified a change. Rows already
+     * loaded are shown until the new ids are in, and the pages whose ids did not change are kept.
+     */
+    public void load() {
+        final int generation = ++mGeneration;
+        // What is shown now is what the new ids are diffed with.
+        final long[] oldIds = (mVersions != null) ? mIds : null;
+        final long[] oldVersions = mVersions;
+
+        if (mIds == null) {
+            mExecutor.execute(new Runnable() {
+                public void run() {
+                    loadFirstPage(generation);
+                }
+            });
+        }
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                loadIds(generation, oldIds, oldVersions);
+            }
+        });
+    }
+
+    /**
+     * Keep the rows of these ids out of sight. The ids are sorted ascending.
+     */
+    public void setHiddenIds(long[] ids) {
+        if (Arrays.equals(ids, mHiddenIds)) {
+            return;
+        }
+        mHiddenIds = ids;
+        updatePositions();
+        notifyChanged();
+    }
+
+    /**
+     * Only show the rows of these ids, or all of them with null. The ids are sorted ascending.
+     */
+    public void setFilter(long[] ids) {
+        if (mFilterResult == null && Arrays.equals(ids, mFilterIds)) {
+            return;
+        }
+        mFilterIds = ids;
+        mFilterResult = null;
+        updatePositions();
+        notifyChanged();
+    }
+
+    /**
+     * Only show the rows of this search result, or all of them with null. From an index built by
+     * buildSearchIndex() on the rows shown, the rows of the result are taken as they are, so a
+     * keystroke costs the size of its result rather than that of the address book; from any other
+     * index, as by setFilter(result.getIds()).
+     */
+    public void setFilter(ContactSearchIndex.Result result) {
+        if (result == mFilterResult && (result != null || mFilterIds == null)) {
+            return;
+        }
+        mFilterIds = null;
+        mFilterResult = result;
+        updatePositions();
+        notifyChanged();
+    }
+
+    /**
+     * Index the names of all rows, in a query of their own on the background thread, for
+     * search as you type.
+     *
+     * @param column of the projection holding the names.
+     */
+    public void buildSearchIndex(final int column, final OnSearchIndexListener listener) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                Cursor cursor = mResolver.query(mUri, new String[] {mProjection[0], mProjection[column]},
+                        mSelection, null, mSortOrder);
+                if (cursor == null) {
+                    return;
+                }
+
+                final ContactSearchIndex index;
+                try {
+                    ContactSearchIndex.Builder builder = new ContactSearchIndex.Builder(cursor.getCount());
+                    while (cursor.moveToNext()) {
+                        String name = cursor.getString(1);
+                        builder.add(cursor.getLong(0), (name != null) ? name : "");
+                    }
+                    index = builder.build();
+                } finally {
+                    cursor.close();
+                }
+                if (DEBUG) Log.v(TAG, "search index built, " + index.size() + " names");
+
+                mHandler.post(new Runnable() {
+                    public void run() {
+                        listener.onSearchIndexBuilt(index);
+                    }
+                });
+            }
+        });
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the titles of the sections, empty without a section column.
+     */
+    public String[] getSections() {
+        return (mSections != null) ? mSections.getSections() : new String[0];
+    }
+
+    /**
+     * @return the first position of this section, or of the next one if it is empty; 0 until
+     * the ids of all rows are loaded.
+     */
+    public int getPositionForSection(int section) {
+        if (mSectionPositions == null) {
+            return 0;
+        }
+        return mSectionPositions[Math.max(0, Math.min(section, mSectionPositions.length - 1))];
+    }
+
+    /**
+     * @return the section of the row at this position, 0 until the ids of all rows are loaded.
+     */
+    public int getSectionForPosition(int position) {
+        if (mRowSections == null || position < 0 || position >= mCount) {
+            return 0;
+        }
+        return mRowSections[row(position)];
+    }
+
+    /**
+     * @return the id of the row at this position, known even when the row is not loaded.
+     */
+    public long getId(int position) {
+        return mIds[row(position)];
+    }
+
+    /**
+     * @return whether the values of the row at this position are loaded. If not, its page is
+     * asked for.
+     */
+    public boolean isLoaded(int position) {
+        return getRows(position) != null;
+    }
+
+    /**
+     * @return the rows holding the row at this position, where it is at getRowInRows(), or null
+     * until it is loaded. Their columns are those of the projection but the id. Rows carried
+     * over a reload stay in the snapshot they came in, so the same one means the same content.
+     */
+    public ContactSnapshot getRows(int position) {
+        return page(position).rows[row(position) % mPageSize];
+    }
+
+    /**
+     * @return the version of the row at this position, 0 until the ids of all rows are loaded or
+     * without a version column.
+     */
+    public long getVersion(int position) {
+        return (mVersions != null) ? mVersions[row(position)] : 0;
+    }
+
+    public int getRowInRows(int position) {
+        return page(position).rowsIndexes[row(position) % mPageSize];
+    }
+
+    /**
+     * @param column in the projection; the id is column 0.
+     * @return the value, or null until the row is loaded.
+     */
+    public String getString(int position, int column) {
+        ContactSnapshot rows = getRows(position);
+        return (rows != null) ? rows.getString(getRowInRows(position), column - 1) : null;
+    }
+
+    private int row(int position) {
+        return (mPositions != null) ? mPositions[position] : position;
+    }
+
+    /*
+     * The page of a position, created and loaded if need be. The next page is asked for too when
+     * the position is in the last half of its own, and the previous one in the first half.
+     */
+    private Page page(int position) {
+        int row = row(position);
+        int index = row / mPageSize;
+
+        mFocus = index;
+        Page page = request(index);
+        int inPage = row % mPageSize;
+        if (inPage >= mPageSize / 2) {
+            request(index + 1);
+        } else {
+            request(index - 1);
+        }
+        return page;
+    }
+
+    private Page request(final int index) {
+        if (index < 0 || index * mPageSize >= mIds.length) {
+            return null;
+        }
+
+        Page page = mPages.get(index);
+        if (page == null) {
+            final Page created = new Page(Arrays.copyOfRange(mIds, index * mPageSize,
+                    Math.min(mIds.length, (index + 1) * mPageSize)));
+            mPages.put(index, created);
+            evict();
+            page = created;
+            fetch(index, created);
+        }
+        return page;
+    }
+
+    private void fetch(final int index, final Page page) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                loadPage(index, page);
+            }
+        });
+    }
+
+    /*
+     * Drop the pages farthest from the focus, down to the maximum.
+     */
+    private void evict() {
+        while (mPages.size() > mMaxPages) {
+            int farthest = 0;
+            for (int i = 1; i < mPages.size(); i++) {
+                if (Math.abs(mPages.keyAt(i) - mFocus) > Math.abs(mPages.keyAt(farthest) - mFocus)) {
+                    farthest = i;
+                }
+            }
+            if (DEBUG) Log.v(TAG, "evict page " + mPages.keyAt(farthest));
+            mPages.removeAt(farthest);
+        }
+    }
+
+    /* Background */
+    private void loadFirstPage(final int generation) {
+        Uri uri = mUri.buildUpon().appendQueryParameter(ContactsContract.LIMIT_PARAM_KEY, String.valueOf(mPageSize)).build();
+        Cursor cursor = mResolver.query(uri, mProjection, mSelection, null, mSortOrder);
+        if (cursor == null) {
+            return;
+        }
+
+        final long[] ids;
+        final ContactSnapshot rows;
+        try {
+            ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            rows = copy(cursor, ids);
+        } finally {
+            cursor.close();
+        }
+
+        mHandler.post(new Runnable() {
+            public void run() {
+                // The ids of all rows may have come first.
+                if (generation != mGeneration || mIds != null) {
+                    return;
+                }
+                Page page = new Page(ids);
+                page.set(rows);
+                mIds = ids;
+                mPages.put(0, page);
+                updatePositions();
+                notifyChanged();
+            }
+        });
+    }
+
+    /* Background */
+    private void loadIds(final int generation, long[] oldIds, long[] oldVersions) {
+        int versionColumn = (mVersionColumn != null) ? 1 : -1;
+        int sectionColumn = (mSectionColumn != null) ? ((versionColumn > 0) ? 2 : 1) : -1;
+        String[] projection = new String[1 + ((versionColumn > 0) ? 1 : 0) + ((sectionColumn > 0) ? 1 : 0)];
+        projection[0] = mProjection[0];
+        if (versionColumn > 0) {
+            projection[versionColumn] = mVersionColumn;
+        }
+        if (sectionColumn > 0) {
+            projection[sectionColumn] = mSectionColumn;
+        }
+        Cursor cursor = mResolver.query(mUri, projection, mSelection, null, mSortOrder);
+        if (cursor == null) {
+            return;
+        }
+
+        final long[] ids;
+        final long[] versions;
+        final byte[] sections;
+        try {
+            ids = new long[cursor.getCount()];
+            versions = new long[ids.length];
+            sections = (sectionColumn > 0) ? new byte[ids.length] : null;
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                if (versionColumn > 0) {
+                    versions[i] = cursor.getLong(versionColumn);
+                }
+                if (sectionColumn > 0) {
+                    sections[i] = (byte) mSections.sectionOf(cursor.getString(sectionColumn));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        final ContactDiff diff = (oldIds != null) ? ContactDiff.compute(oldIds, oldVersions, ids, versions) : null;
+        if (DEBUG) Log.v(TAG, "ids loaded, " + ids.length + " rows, diff " + diff);
+
+        mHandler.post(new Runnable() {
+            public void run() {
+                if (generation == mGeneration) {
+                    onIdsLoaded(ids, versions, sections, diff);
+                }
+            }
+        });
+    }
+
+    private void onIdsLoaded(long[] ids, long[] versions, byte[] sections, ContactDiff diff) {
+        if (diff == null) {
+            // Only the first page may be loaded, and kept if the same.
+            for (int i = mPages.size() - 1; i >= 0; i--) {
+                int from = mPages.keyAt(i) * mPageSize;
+                int length = Math.min(mPageSize, ids.length - from);
+                long[] pageIds = mPages.valueAt(i).ids;
+                if (length != pageIds.length || !Arrays.equals(pageIds, Arrays.copyOfRange(ids, from, from + length))) {
+                    mPages.removeAt(i);
+                }
+            }
+        } else if (!diff.isEmpty()) {
+            carryOver(ids, diff);
+        }
+
+        // Without a version column, a changed sort key may not show in the diff.
+        boolean sectionsChanged = !Arrays.equals(sections, mRowSections);
+        mIds = ids;
+        mVersions = versions;
+        mRowSections = sections;
+        if (mCallback != null) {
+            mCallback.onReloaded(diff);
+        }
+        if (diff == null || !diff.isEmpty() || sectionsChanged) {
+            updatePositions();
+            notifyChanged();
+        }
+    }
+
+    /*
+     * Rebuild the pages around the focus with the rows already known, now at their new rows. Pages
+     * with rows new, changed or not loaded yet are queried again; until then the rows known are
+     * shown as they were.
+     */
+    private void carryOver(long[] ids, ContactDiff diff) {
+        SparseArray<Page> old = mPages.clone();
+        mPages.clear();
+
+        int first = Math.max(0, mFocus - mMaxPages / 2);
+        for (int index = first; index < first + mMaxPages && index * mPageSize < ids.length; index++) {
+            int from = index * mPageSize;
+            Page page = new Page(Arrays.copyOfRange(ids, from, Math.min(ids.length, from + mPageSize)));
+            boolean known = false;
+            boolean loaded = true;
+            for (int i = 0; i < page.ids.length; i++) {
+                int oldRow = diff.getOldRow(from + i);
+                Page oldPage = (oldRow >= 0) ? old.get(oldRow / mPageSize) : null;
+                if (oldPage == null || oldPage.rows[oldRow % mPageSize] == null) {
+                    loaded = false;
+                    continue;
+                }
+
+                page.rows[i] = oldPage.rows[oldRow % mPageSize];
+                page.rowsIndexes[i] = oldPage.rowsIndexes[oldRow % mPageSize];
+                known = true;
+                if (!oldPage.loaded || diff.isChanged(from + i)) {
+                    loaded = false;
+                }
+            }
+
+            if (known) {
+                page.loaded = loaded;
+                mPages.put(index, page);
+                if (!loaded) {
+                    fetch(index, page);
+                }
+            }
+        }
+    }
+
+    /* Background */
+    private void loadPage(final int index, final Page page) {
+        // Too far already, flung past
+        if (Math.abs(index - mFocus) > mMaxPages / 2) {
+            mHandler.post(new Runnable() {
+                public void run() {
+                    if (mPages.get(index) == page) {
+                        mPages.remove(index);
+                    }
+                }
+            });
+            return;
+        }
+
+        StringBuilder selection = new StringBuilder();
+        if (mSelection != null) {
+            selection.append('(').append(mSelection).append(") AND ");
+        }
+        selection.append(mProjection[0]).append(" IN (");
+        for (int i = 0; i < page.ids.length; i++) {
+            if (i > 0) {
+                selection.append(',');
+            }
+            selection.append(page.ids[i]);
+        }
+        selection.append(')');
+
+        Cursor cursor = mResolver.query(mUri, mProjection, selection.toString(), null, null);
+        final ContactSnapshot rows;
+        if (cursor != null) {
+            try {
+                rows = copy(cursor, page.ids);
+            } finally {
+                cursor.close();
+            }
+        } else {
+            rows = new ContactSnapshot.Builder(page.ids, mProjection.length - 1).build();
+        }
+
+        mHandler.post(new Runnable() {
+            public void run() {
+                page.set(rows);
+                // Kept across a reload if its ids did not change
+                if (mPages.get(index) == page && mCallback != null) {
+                    mCallback.onRowsLoaded();
+                }
+            }
+        });
+    }
+
+    /*
+     * Copy the values of the rows of the cursor, each at the place of its id. Rows deleted since
+     * the ids were loaded are left null.
+     */
+    private ContactSnapshot copy(Cursor cursor, long[] ids) {
+        ContactSnapshot.Builder builder = new ContactSnapshot.Builder(ids, mProjection.length - 1);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            long id = cursor.getLong(0);
+            for (int row = 0; row < ids.length; row++) {
+                if (ids[row] == id) {
+                    builder.setRow(row, cursor, 1);
+                    break;
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private void updatePositions() {
+        if (mIds == null) {
+            mPositions = null;
+            mCount = 0;
+        } else if (mFilterResult != null && linesUp(mFilterResult.getIndex())) {
+            // Rows of the index are rows of the pager: only those found are looked at.
+            int[] rows = mFilterResult.getRows();
+            if (mHiddenIds.length == 0) {
+                mPositions = rows;
+                mCount = rows.length;
+            } else {
+                int[] positions = new int[rows.length];
+                int count = 0;
+                for (int row : rows) {
+                    if (Arrays.binarySearch(mHiddenIds, mIds[row]) < 0) {
+                        positions[count++] = row;
+                    }
+                }
+                mPositions = positions;
+                mCount = count;
+            }
+        } else if (mHiddenIds.length == 0 && mFilterIds == null && mFilterResult == null) {
+            mPositions = null;
+            mCount = mIds.length;
+        } else {
+            long[] filterIds = (mFilterResult != null) ? mFilterResult.getIds() : mFilterIds;
+            int[] positions = new int[mIds.length];
+            int count = 0;
+            for (int i = 0; i < mIds.length; i++) {
+                if (Arrays.binarySearch(mHiddenIds, mIds[i]) < 0
+                        && (filterIds == null || Arrays.binarySearch(filterIds, mIds[i]) >= 0)) {
+                    positions[count++] = i;
+                }
+            }
+            mPositions = positions;
+            mCount = count;
+        }
+
+        mSectionPositions = (mRowSections != null) ? mSections.getPositions(mRowSections, mPositions, mCount) : null;
+    }
+
+    /*
+     * Whether the rows of the index are the rows of the pager, one for one. Checked once for each
+     * index and each load of the ids, as an index built before a reload no longer is.
+     */
+    private boolean linesUp(ContactSearchIndex index) {
+        if (index != mLinedUpIndex || mIds != mLinedUpIds) {
+            boolean linedUp = (mVersions != null && index.size() == mIds.length);
+            for (int row = 0; linedUp && row < mIds.length; row++) {
+                linedUp = (index.getId(row) == mIds[row]);
+            }
+            mLinedUpIndex = index;
+            mLinedUpIds = mIds;
+            mLinedUp = linedUp;
+        }
+        return mLinedUp;
+    }
+
+    private void notifyChanged() {
+        if (mCallback != null) {
+            mCallback.onChanged();
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * An in-memory index of names for search as you type: a name matches when every word of the query
+ * is the beginning of one of its words, regardless of case and diacritics, so "jo mar" finds
+ * Marie-Joelle, accented or not. Built once on a background thread, it answers on the main thread
+ * without going to the provider.
+ *
+ * The words of all names are kept sorted in one array, so a query is a binary search and a scan
+ * over the words it begins. A query extending the previous one only narrows the previous result.
+ * Rows are in the order the names were added, and results keep it.
+ */
+public final class ContactSearchIndex {
+    private final long[] mIds; // of each row
+    private final char[] mPool; // normalized names, words separated by a space
+    private final int[] mRowStarts; // of each name in the pool, and the end of the last one
+    private final int[] mWords; // start in the pool of each word, sorted by the words
+    private final int[] mWordRows; // row of each word, along with mWords
+    private final boolean[] mMarks; // reused by searches, one per row
+
+    /**
+     * Rows matching a query, in the order of the index.
+     */
+    public static final class Result {
+        private final ContactSearchIndex mIndex;
+        private final String mQuery; // normalized
+        private final int[] mRows;
+        private long[] mIds; // sorted, once asked for
+
+        Result(ContactSearchIndex index, String query, int[] rows) {
+            mIndex = index;
+            mQuery = query;
+            mRows = rows;
+        }
+
+        public int getCount() {
+            return mRows.length;
+        }
+
+        public int getRow(int i) {
+            return mRows[i];
+        }
+
+        ContactSearchIndex getIndex() {
+            return mIndex;
+        }
+
+        /*
+         * The rows matching, ascending; shared, not to be changed.
+         */
+        int[] getRows() {
+            return mRows;
+        }
+
+        /**
+         * @return the ids of the rows matching, sorted ascending.
+         */
+        public long[] getIds() {
+            if (mIds == null) {
+                long[] ids = new long[mRows.length];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = mIndex.mIds[mRows[i]];
+                }
+                Arrays.sort(ids);
+                mIds = ids;
+            }
+            return mIds;
+        }
+    }
+
+    /**
+     * Normalizes names as they are added, on the thread building the index.
+     */
+    public static final class Builder {
+        private long[] mIds;
+        private char[] mPool;
+        private int[] mRowStarts;
+        private int mRows;
+        private int mSize;
+        private int mWordCount;
+
+        public Builder(int capacity) {
+            mIds = new long[Math.max(capacity, 16)];
+            mRowStarts = new int[mIds.length + 1];
+            mPool = new char[mIds.length * 16];
+        }
+
+        public Builder add(long id, CharSequence name) {
+            if (mRows == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mRows * 2);
+                mRowStarts = Arrays.copyOf(mRowStarts, mRows * 2 + 1);
+            }
+
+            String normalized = normalize(name);
+            if (mSize + normalized.length() + 1 > mPool.length) {
+                mPool = Arrays.copyOf(mPool, Math.max(mPool.length * 2, mSize + normalized.length() + 1));
+            }
+            mIds[mRows] = id;
+            mRowStarts[mRows] = mSize;
+            normalized.getChars(0, normalized.length(), mPool, mSize);
+            mSize += normalized.length();
+            if (normalized.length() > 0) {
+                mWordCount++;
+                for (int i = 0; i < normalized.length(); i++) {
+                    if (normalized.charAt(i) == ' ') {
+                        mWordCount++;
+                    }
+                }
+            }
+            mRows++;
+            return this;
+        }
+
+        public ContactSearchIndex build() {
+            mRowStarts[mRows] = mSize;
+            int[] words = new int[mWordCount];
+            int[] wordRows = new int[mWordCount];
+            int w = 0;
+            for (int row = 0; row < mRows; row++) {
+                int end = mRowStarts[row + 1];
+                for (int i = mRowStarts[row]; i < end; i++) {
+                    if (i == mRowStarts[row] || mPool[i - 1] == ' ') {
+                        words[w] = i;
+                        wordRows[w] = row;
+                        w++;
+                    }
+                }
+            }
+            char[] pool = Arrays.copyOf(mPool, mSize);
+            int[] rowStarts = Arrays.copyOf(mRowStarts, mRows + 1);
+            sortWords(pool, rowStarts, words, wordRows);
+            return new ContactSearchIndex(Arrays.copyOf(mIds, mRows), pool, rowStarts, words, wordRows);
+        }
+    }
+
+    private ContactSearchIndex(long[] ids, char[] pool, int[] rowStarts, int[] words, int[] wordRows) {
+        mIds = ids;
+        mPool = pool;
+        mRowStarts = rowStarts;
+        mWords = words;
+        mWordRows = wordRows;
+        mMarks = new boolean[ids.length];
+    }
+
+    public int size() {
+        return mIds.length;
+    }
+
+    public long getId(int row) {
+        return mIds[row];
+    }
+
+    /**
+     * @return the rows matching the query, or null for an empty query, meaning all of them.
+     */
+    public Result search(CharSequence query) {
+        return search(query, null);
+    }
+
+    /**
+     * @param previous result of this index; if the query extends its query, only its rows are
+     * looked at.
+     * @return the rows matching the query, or null for an empty query, meaning all of them.
+     */
+    public Result search(CharSequence query, Result previous) {
+        String normalized = normalize(query);
+        if (normalized.length() == 0) {
+            return null;
+        }
+
+        String[] words = normalized.split(" ");
+        if (previous != null && previous.mIndex == this && normalized.startsWith(previous.mQuery)) {
+            if (normalized.equals(previous.mQuery)) {
+                return previous;
+            }
+            return new Result(this, normalized, narrow(previous.mRows, words));
+        }
+
+        // The rows with a word beginning with the first word of the query, then the others
+        String first = words[0];
+        int from = lowerBound(first);
+        int count = 0;
+        for (int w = from; w < mWords.length && startsWith(mWords[w], first); w++) {
+            if (!mMarks[mWordRows[w]]) {
+                mMarks[mWordRows[w]] = true;
+                count++;
+            }
+        }
+        int[] rows = new int[count];
+        int found = 0;
+        for (int row = 0; found < count; row++) {
+            if (mMarks[row]) {
+                mMarks[row] = false;
+                rows[found++] = row;
+            }
+        }
+        return new Result(this, normalized, (words.length > 1) ? narrow(rows, words) : rows);
+    }
+
+    private int[] narrow(int[] rows, String[] words) {
+        int[] kept = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            if (matches(row, words)) {
+                kept[count++] = row;
+            }
+        }
+        return (count == rows.length) ? rows : Arrays.copyOf(kept, count);
+    }
+
+    private boolean matches(int row, String[] words) {
+        int start = mRowStarts[row];
+        int end = mRowStarts[row + 1];
+        for (String word : words) {
+            boolean found = false;
+            for (int i = start; i < end && !found; i++) {
+                if ((i == start || mPool[i - 1] == ' ') && startsWith(i, word) && i + word.length() <= end) {
+                    found = true;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Whether the word at this place of the pool begins with the given one. Names are separated
+     * in the pool by nothing, but the check against the end of the row is left to the caller.
+     */
+    private boolean startsWith(int at, String prefix) {
+        if (at + prefix.length() > mPool.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (mPool[at + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The first word not before the given one.
+     */
+    private int lowerBound(String word) {
+        int low = 0;
+        int high = mWords.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mPool, mWords[mid], wordEnd(mPool, mRowStarts, mWords[mid], mWordRows[mid]), word) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the string lower cased, without diacritics, with words separated by single spaces.
+     */
+    public static String normalize(CharSequence s) {
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (!Character.isLetterOrDigit(c)) {
+                space = normalized.length() > 0;
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            c = Character.toLowerCase(c);
+            // Letters with no decomposition
+            switch (c) {
+                case '\u00f8': c = 'o'; break; // o with stroke
+                case '\u0142': c = 'l'; break; // l with stroke
+                case '\u0111': c = 'd'; break; // d with stroke
+                case '\u0131': c = 'i'; break; // dotless i
+                case '\u00df': normalized.append('s'); c = 's'; break; // sharp s
+                default: break;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    private static int wordEnd(char[] pool, int[] rowStarts, int start, int row) {
+        int end = rowStarts[row + 1];
+        int i = start;
+        while (i < end && pool[i] != ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int compare(char[] pool, int start, int end, String word) {
+        int length = Math.min(end - start, word.length());
+        for (int i = 0; i < length; i++) {
+            int diff = pool[start + i] - word.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (end - start) - word.length();
+    }
+
+    private static int compare(char[] pool, int[] rowStarts, int a, int aRow, int b, int bRow) {
+        int aEnd = wordEnd(pool, rowStarts, a, aRow);
+        int bEnd = wordEnd(pool, rowStarts, b, bRow);
+        int length = Math.min(aEnd - a, bEnd - b);
+        for (int i = 0; i < length; i++) {
+            int diff = pool[a + i] - pool[b + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (aEnd - a) - (bEnd - b);
+    }
+
+    /*
+     * Merge sort of the words, their rows along.
+     */
+    private static void sortWords(char[] pool, int[] rowStarts, int[] words, int[] rows) {
+        int n = words.length;
+        int[] workWords = new int[n];
+        int[] workRows = new int[n];
+        int[] srcWords = words;
+        int[] srcRows = rows;
+        for (int width = 1; width < n; width *= 2) {
+            for (int from = 0; from < n; from += 2 * width) {
+                int mid = Math.min(from + width, n);
+                int to = Math.min(from + 2 * width, n);
+                int i = from, j = mid, k = from;
+                while (i < mid && j < to) {
+                    if (compare(pool, rowStarts, srcWords[j], srcRows[j], srcWords[i], srcRows[i]) < 0) {
+                        workWords[k] = srcWords[j];
+                        workRows[k++] = srcRows[j++];
+                    } else {
+                        workWords[k] = srcWords[i];
+                        workRows[k++] = srcRows[i++];
+                    }
+                }
+                while (i < mid) {
+                    workWords[k] = srcWords[i];
+                    workRows[k++] = srcRows[i++];
+                }
+                while (j < to) {
+                    workWords[k] = srcWords[j];
+                    workRows[k++] = srcRows[j++];
+                }
+            }
+            int[] swap = srcWords;
+            srcWords = workWords;
+            workWords = swap;
+            swap = srcRows;
+            srcRows = workRows;
+            workRows = swap;
+        }
+        if (srcWords != words) {
+            System.arraycopy(srcWords, 0, words, 0, n);
+            System.arraycopy(srcRows, 0, rows, 0, n);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import java.util.Arrays;
+
+/**
+ * Rows of contacts copied out of a cursor, column by column: the ids in a long array, and the
+ * text of every value packed in one char array, found by start and length. Once built it does not
+ * change, so it can be read on any thread, and the cursor can be closed.
+ *
+ * Text is bound by index with TextView.setText(char[], int, int), which copies the chars without
+ * a String per row nor a move in a cursor window.
+ */
+public final class ContactSnapshot {
+    private final long[] mIds;
+    private final int mColumns;
+    private final char[] mPool;
+    private final int[] mStarts; // of each value, row after row; -1 if null
+    private final int[] mLengths;
+
+    private ContactSnapshot(long[] ids, int columns, char[] pool, int[] starts, int[] lengths) {
+        mIds = ids;
+        mColumns = columns;
+        mPool = pool;
+        mStarts = starts;
+        mLengths = lengths;
+    }
+
+    public int getCount() {
+        return mIds.length;
+    }
+
+    public int getColumnCount() {
+        return mColumns;
+    }
+
+    public long getId(int row) {
+        return mIds[row];
+    }
+
+    public boolean isNull(int row, int column) {
+        return mStarts[row * mColumns + column] < 0;
+    }
+
+    /**
+     * @return the chars of all values; not to be modified.
+     */
+    public char[] getPool() {
+        return mPool;
+    }
+
+    /**
+     * @return where the value starts in the pool, 0 if it is null.
+     */
+    public int getStart(int row, int column) {
+        return Math.max(mStarts[row * mColumns + column], 0);
+    }
+
+    /**
+     * @return the length of the value, 0 if it is null.
+     */
+    public int getLength(int row, int column) {
+        return mLengths[row * mColumns + column];
+    }
+
+    /**
+     * @return the value, as a new String, or null.
+     */
+    public String getString(int row, int column) {
+        int value = row * mColumns + column;
+        return (mStarts[value] < 0) ? null : new String(mPool, mStarts[value], mLengths[value]);
+    }
+
+    /**
+     * Copies the values of cursor rows into a snapshot. Rows not set stay null.
+     */
+    public static final class Builder {
+        private final long[] mIds;
+        private final int mColumns;
+        private final int[] mStarts;
+        private final int[] mLengths;
+        private char[] mPool;
+        private int mSize;
+        private final CharArrayBuffer mBuffer = new CharArrayBuffer(64);
+
+        /**
+         * @param ids of the rows, in the order of the snapshot.
+         * @param columns values per row, besides the id.
+         */
+        public Builder(long[] ids, int columns) {
+            mIds = ids;
+            mColumns = columns;
+            mStarts = new int[ids.length * columns];
+            mLengths = new int[ids.length * columns];
+            Arrays.fill(mStarts, -1);
+            mPool = new char[ids.length * columns * 16];
+        }
+
+        /**
+         * Copy the values of the current row of the cursor, the columns after cursorColumn, into
+         * this row.
+         */
+        public Builder setRow(int row, Cursor cursor, int cursorColumn) {
+            for (int c = 0; c < mColumns; c++) {
+                int value = row * mColumns + c;
+                if (cursor.isNull(cursorColumn + c)) {
+                    mStarts[value] = -1;
+                    mLengths[value] = 0;
+                    continue;
+                }
+
+                // Straight from the cursor window into a reused buffer, no String
+                cursor.copyStringToBuffer(cursorColumn + c, mBuffer);
+                int length = mBuffer.sizeCopied;
+                if (mSize + length > mPool.length) {
+                    mPool = Arrays.copyOf(mPool, Math.max(mPool.length * 2, mSize + length));
+                }
+                System.arraycopy(mBuffer.data, 0, mPool, mSize, length);
+                mStarts[value] = mSize;
+                mLengths[value] = length;
+                mSize += length;
+            }
+            return this;
+        }
+
+        public ContactSnapshot build() {
+            return new ContactSnapshot(mIds, mColumns, Arrays.copyOf(mPool, mSize), mStarts, mLengths);
+        }
+    }
+}
@@ -1,103 +1,417 @@
 package com.hsinkoyu.android.swipelistitem;
 
 import android.Manifest;
+import android.app.ActivityManager;
 import android.app.ListActivity;
-import android.app.LoaderManager;
-import android.content.CursorLoader;
-import android.content.Loader;
+import android.content.ContentUris;
+import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
+import android.database.ContentObserver;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.provider.ContactsContract;
+import android.text.Editable;
+import android.text.TextPaint;
+import android.text.TextWatcher;
 import android.os.Bundle;
 import android.view.View;
+import android.widget.AbsListView;
+import android.widget.EditText;
+import android.widget.ImageView;
 import android.widget.ListView;
+import android.widget.TextView;
 import android.widget.Toast;
 
-public class MainActivity extends ListActivity
-        implements LoaderManager.LoaderCallbacks<Cursor> {
+public class MainActivity extends ListActivity {
 
     private static final int PERMISSIONS_REQUEST_READ_CONTACTS = 1;
 
+    private static final String STATE_SWIPE_STATES = "swipe_states";
+
+    private static final long UNDO_WINDOW = 4000; // milliseconds to undo dismissals
+
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_PAGES = 8;
+
+    private static final int PREWARMED_SWIPE_ITEMS = 2; // one swiped, one being restored
+
+    private static final long PHOTO_DISK_CACHE_BYTES = 8 * 1024 * 1024;
+
+    private static final int NAME_LAYOUT_SLOTS = 256;
+
     // This is the Adapter being used to display the list's data
     ContactListAdapter mAdapter;
 
+    // Loads the contacts a page at a time; kept across configuration changes
+    ContactPager mPager;
+
+    // Rows inflated in the background while the contacts load
+    RowPool mRowPool;
+
+    // Contact photos, cached in memory and on disk
+    PhotoLoader mPhotoLoader;
+
+    // Reloads the contacts when they change
+    ContentObserver mContactsObserver;
+
+    // Swipes the list items on behalf of the whole list
+    SwipeCoordinator mSwipeCoordinator;
+
+    // Swipe states saved before a configuration change, until the coordinator is there
+    SwipeStates mSavedSwipeStates;
+
+    // Deletes the dismissed contacts, a batch per undo window
+    BatchedDeleter mDeleter;
+
+    // Whether the names have been indexed for search, and are kept indexed on reloads
+    boolean mSearchIndexRequested;
+    int mSearchIndexGeneration; // an index built before the latest reload is dropped
+
+    View mUndoBar;
+    TextView mUndoMessage;
+
     // These are the Contacts rows that we will retrieve
     static final String[] PROJECTION = new String[] {ContactsContract.Contacts._ID,
-            ContactsContract.Contacts.DISPLAY_NAME_PRIMARY};
+            ContactsContract.Contacts.DISPLAY_NAME_PRIMARY,
+            ContactsContract.Contacts.PHOTO_THUMBNAIL_URI};
+    static final int COLUMN_NAME = 1;
+    static final int COLUMN_PHOTO = 2;
 
     // This is the select criteria
     static final String SELECTION = "((" +
             ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " NOTNULL) AND (" +
             ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " != '' ))";
 
+    // Pages need an order that does not change between queries.
+    static final String SORT_ORDER = ContactsContract.Contacts.SORT_KEY_PRIMARY + ", " +
+            ContactsContract.Contacts._ID;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        mUndoBar = findViewById(R.id.undo_bar);
+        mUndoMessage = (TextView) findViewById(R.id.undo_message);
+        findViewById(R.id.undo_button).setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                if (mDeleter != null) {
+                    mDeleter.undo();
+                }
+            }
+        });
+
+        if (savedInstanceState != null) {
+            mSavedSwipeStates = savedInstanceState.getParcelable(STATE_SWIPE_STATES);
+        }
+
         showContacts();
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+
+        if (mSwipeCoordinator != null) {
+            outState.putParcelable(STATE_SWIPE_STATES, mSwipeCoordinator.getStates());
+        } else if (mSavedSwipeStates != null) {
+            outState.putParcelable(STATE_SWIPE_STATES, mSavedSwipeStates);
+        }
+    }
+
+    @Override
+    public Object onRetainNonConfigurationInstance() {
+        return mPager;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        if (mContactsObserver != null) {
+            getContentResolver().unregisterContentObserver(mContactsObserver);
+        }
+        if (mRowPool != null) {
+            mRowPool.clear();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (mPhotoLoader != null && level >= TRIM_MEMORY_MODERATE) {
+            mPhotoLoader.trimMemory();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        // Leaving the screen closes the undo window.
+        if (mDeleter != null) {
+            mDeleter.commit();
+            updateUndoBar();
+        }
+    }
+
     private void showContacts() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && checkSelfPermission(Manifest.permission.READ_CONTACTS) != PackageManager.PERMISSION_GRANTED) {
-            requestPermissions(new String[] {Manifest.permission.READ_CONTACTS}, PERMISSIONS_REQUEST_READ_CONTACTS);
+            requestPermissions(new String[] {Manifest.permission.READ_CONTACTS, Manifest.permission.WRITE_CONTACTS}, PERMISSIONS_REQUEST_READ_CONTACTS);
             //After this point you wait for callback in onRequestPermissionsResult(int, String[], int[]) overridden method
         } else {
             // Android version is lesser than 6.0 or the permission is already granted.
 
-            // For the cursor adapter, specify which columns go into which views
-            String[] fromColumns = {ContactsContract.Contacts.DISPLAY_NAME_PRIMARY};
-            int[] toViews = {R.id.name};
+            // For the adapter, specify which columns of the projection go into which views
+            // Names are drawn by a NameView of their own, below.
+            int[] fromColumns = {};
+            int[] toViews = {};
+
+            // Inflate a screenful of rows in the background, while the contacts are queried.
+            mRowPool = new RowPool(this, R.layout.contact_list_item, getListView());
+            int rowHeight = getResources().getDimensionPixelSize(R.dimen.contact_row_height);
+            mRowPool.prewarm(getResources().getDisplayMetrics().heightPixels / rowHeight + 2);
 
             // Create an empty adapter we will use to display the loaded data.
-            // We pass null for the cursor, then update it in onLoadFinished()
             mAdapter = new ContactListAdapter(this,
-                    R.layout.contact_list_item, null,
-                    fromColumns, toViews, 0);
+                    R.layout.contact_list_item, fromColumns, toViews);
+            mAdapter.setRowPool(mRowPool);
+
+            // An eighth of the memory of the app for photos
+            int memoryClass = ((ActivityManager) getSystemService(ACTIVITY_SERVICE)).getMemoryClass();
+            mPhotoLoader = new PhotoLoader(this, getResources().getDimensionPixelSize(R.dimen.contact_photo_size),
+                    memoryClass * 1024 * 1024 / 8, PHOTO_DISK_CACHE_BYTES);
+            mAdapter.setPhotoLoader(mPhotoLoader, COLUMN_PHOTO, R.id.photo);
+            getListView().setRecyclerListener(new AbsListView.RecyclerListener() {
+                public void onMovedToScrapHeap(View view) {
+                    // Scrolled out, its photo is no longer worth decoding first
+                    mPhotoLoader.cancel((ImageView) view.findViewById(R.id.photo));
+                }
+            });
+
+            TextPaint namePaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+            namePaint.density = getResources().getDisplayMetrics().density;
+            namePaint.setTextSize(getResources().getDimension(R.dimen.contact_name_text_size));
+            namePaint.setColor(getResources().getColor(R.color.contact_name));
+            mAdapter.setNameLayouts(new TextLayoutCache(namePaint, NAME_LAYOUT_SLOTS), COLUMN_NAME, R.id.name);
             setListAdapter(mAdapter);
 
-            // Prepare the loader.  Either re-connect with an existing one,
-            // or start a new one.
-            getLoaderManager().initLoader(0, null, this);
+            mSwipeCoordinator = SwipeCoordinator.attach(getListView(), SwipeListItem.SWIPE_LEFT, SwipeListItem.TYPE_PULL_OUT);
+            if (mSavedSwipeStates != null) {
+                mSwipeCoordinator.setStates(mSavedSwipeStates);
+                mSavedSwipeStates = null;
+            }
+            mSwipeCoordinator.setMoveDispatchMode(SwipeListItem.MOVE_DISPATCH_PER_FRAME);
+            mSwipeCoordinator.setArbitrationMode(SwipeListItem.ARBITRATION_SLOP);
+            mSwipeCoordinator.setSharedPanesEnabled(true);
+            mSwipeCoordinator.setOnSharedPaneAttachedListener(new SwipeListItem.OnSharedPaneAttachedListener() {
+                public void onSharedPaneAttached(View pane, final long id) {
+                    // The contact left open is the one to call, from its card.
+                    pane.findViewById(R.id.right_button).setOnClickListener(new View.OnClickListener() {
+                        public void onClick(View v) {
+                            startActivity(new Intent(Intent.ACTION_VIEW,
+                                    ContentUris.withAppendedId(ContactsContract.Contacts.CONTENT_URI, id)));
+                        }
+                    });
+                }
+            });
+            mAdapter.setSwipeCoordinator(mSwipeCoordinator);
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                public boolean queueIdle() {
+                    if (mSwipeCoordinator != null) {
+                        mSwipeCoordinator.prewarm(PREWARMED_SWIPE_ITEMS);
+                    }
+                    return false;
+                }
+            });
+
+            // Swiping a contact all the way deletes it, after an undo window.
+            mDeleter = new BatchedDeleter(getContentResolver(), ContactsContract.AUTHORITY,
+                    ContactsContract.Contacts.CONTENT_URI, UNDO_WINDOW);
+            mDeleter.setCallback(new BatchedDeleter.Callback() {
+                public void onHiddenChanged() {
+                    mPager.setHiddenIds(mDeleter.getHiddenIds());
+                    updateUndoBar();
+                }
+
+                public void onCommitted(int count) {
+                    updateUndoBar();
+                }
+
+                public void onCommitFailed(long[] ids, Exception e) {
+                    Toast.makeText(MainActivity.this, R.string.delete_failed, Toast.LENGTH_SHORT).show();
+                }
+            });
+            if (canWriteContacts()) {
+                mSwipeCoordinator.setOnDismissListener(new SwipeCoordinator.OnDismissListener() {
+                    public void onDismiss(long id) {
+                        mDeleter.dismiss(id);
+                    }
+                });
+            }
+            // Otherwise a swiped contact is left open, rather than hidden for a delete bound to fail.
+            mSwipeCoordinator.setOnSwipeListener(new SwipeListItem.OnSwipeListener() {
+                public void onReady() {
+                }
+
+                public void onStart(int direction, int distance) {
+                    //Log.v(TAG, "SwipeListItem onStart() direction = " + direction + " distance = " + distance);
+
+                }
+
+                public void onMove(int direction, int distance) {
+                    //Log.v(TAG, "SwipeListItem onMove() direction = " + direction + " distance = " + distance);
+
+                }
+
+                public void onGoCancelling(int direction, int distance) {
+                    //Log.v(TAG, "SwipeListItem onGoCancelling() direction = " + direction + " distance = " + distance);
+
+                }
+
+                public void onCancelled(int direction, int distance) {
+                    //Log.v(TAG, "SwipeListItem onCancelled() direction = " + direction + " distance = " + distance);
+
+                }
+
+                public void onGoSwiping(int direction, int distance) {
+                    //Log.v(TAG, "SwipeListItem onGoSwiping() direction = " + direction + " distance = " + distance);
+
+                }
+
+                public void onSwiped(int direction, int distance) {
+                    //Log.v(TAG, "SwipeListItem onSwiped() direction = " + direction + " distance = " + distance);
+
+                }
+            });
+
+            // Either re-connect with the pager of the previous instance, or start a new one.
+            mPager = (ContactPager) getLastNonConfigurationInstance();
+            if (mPager == null) {
+                mPager = new ContactPager(getContentResolver(), ContactsContract.Contacts.CONTENT_URI,
+                        PROJECTION, SELECTION, SORT_ORDER, PAGE_SIZE, MAX_PAGES);
+                mPager.setVersionColumn(ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP);
+                mPager.setSectionColumn(ContactsContract.Contacts.SORT_KEY_PRIMARY,
+                        new AlphabetSections(getString(R.string.fast_scroll_alphabet)));
+                mPager.load();
+            }
+            mPager.setCallback(new ContactPager.Callback() {
+                public void onReloaded(ContactDiff diff) {
+                    // Deleted contacts are gone from it.
+                    mDeleter.onDataReloaded();
+                    mPager.setHiddenIds(mDeleter.getHiddenIds());
+                    if (mSearchIndexRequested) {
+                        buildSearchIndex();
+                    }
+                }
+
+                public void onChanged() {
+                    mAdapter.notifyDataSetChanged();
+                }
+
+                public void onRowsLoaded() {
+                    mAdapter.notifyDataSetChanged();
+                }
+            });
+            mAdapter.setContacts(mPager);
+            // Once the adapter has its sections
+            getListView().setFastScrollEnabled(true);
+
+            // The names are indexed once searching starts, then filtered as they are typed.
+            EditText search = (EditText) findViewById(R.id.search);
+            search.setOnFocusChangeListener(new View.OnFocusChangeListener() {
+                public void onFocusChange(View v, boolean hasFocus) {
+                    if (hasFocus) {
+                        requestSearchIndex();
+                    }
+                }
+            });
+            search.addTextChangedListener(new TextWatcher() {
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                public void afterTextChanged(Editable s) {
+                    requestSearchIndex();
+                    mAdapter.filter(s);
+                }
+            });
+
+            mContactsObserver = new ContentObserver(new Handler()) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    mPager.load();
+                }
+            };
+            getContentResolver().registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true, mContactsObserver);
+        }
+    }
+
+    private void requestSearchIndex() {
+        if (!mSearchIndexRequested) {
+            mSearchIndexRequested = true;
+            buildSearchIndex();
         }
     }
 
+    private void buildSearchIndex() {
+        final int generation = ++mSearchIndexGeneration;
+        mPager.buildSearchIndex(COLUMN_NAME, new ContactPager.OnSearchIndexListener() {
+            public void onSearchIndexBuilt(ContactSearchIndex index) {
+                if (generation == mSearchIndexGeneration) {
+                    mAdapter.setSearchIndex(index);
+                }
+            }
+        });
+    }
+
+    private void updateUndoBar() {
+        int count = mDeleter.getPendingCount();
+        if (count > 0) {
+            mUndoMessage.setText(getResources().getQuantityString(R.plurals.contacts_deleted, count, count));
+            mUndoBar.setVisibility(View.VISIBLE);
+        } else {
+            mUndoBar.setVisibility(View.GONE);
+        }
+    }
+
+    private boolean canWriteContacts() {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                || checkSelfPermission(Manifest.permission.WRITE_CONTACTS) == PackageManager.PERMISSION_GRANTED;
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         if (requestCode == PERMISSIONS_REQUEST_READ_CONTACTS) {
-            if (grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+            boolean read = false;
+            boolean write = false;
+            // Empty if the request was interrupted
+            for (int i = 0; i < permissions.length && i < grantResults.length; i++) {
+                boolean granted = grantResults[i] == PackageManager.PERMISSION_GRANTED;
+                if (Manifest.permission.READ_CONTACTS.equals(permissions[i])) {
+                    read = granted;
+                } else if (Manifest.permission.WRITE_CONTACTS.equals(permissions[i])) {
+                    write = granted;
+                }
+            }
+
+            if (read) {
                 // Permission is granted
                 showContacts();
+                if (!write) {
+                    Toast.makeText(this, R.string.dismiss_needs_write, Toast.LENGTH_SHORT).show();
+                }
             } else {
                 Toast.makeText(this, "Grant the permission to see contacts.", Toast.LENGTH_SHORT).show();
             }
         }
     }
 
-    // Called when a new Loader needs to be created
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        // Now create and return a CursorLoader that will take care of
-        // creating a Cursor for the data being displayed.
-        return new CursorLoader(this, ContactsContract.Contacts.CONTENT_URI,
-                PROJECTION, SELECTION, null, null);
-    }
-
-    // Called when a previously created loader has finished loading
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Swap the new cursor in.  (The framework will take care of closing the
-        // old cursor once we return.)
-        mAdapter.swapCursor(data);
-    }
-
-    // Called when a previously created loader is reset, making the data unavailable
-    public void onLoaderReset(Loader<Cursor> loader) {
-        // This is called when the last Cursor provided to onLoadFinished()
-        // above is about to be closed.  We need to make sure we are no
-        // longer using it.
-        mAdapter.swapCursor(null);
-    }
-
     @Override
     public void onListItemClick(ListView l, View v, int position, long id) {
         // Do something when a list item is clicked
@@ -0,0 +1,108 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Draws the text of a list item from a layout of a TextLayoutCache, usually laid out before the
+ * item is even bound, instead of measuring and breaking it into lines as a TextView does on every
+ * bind. It takes the size it is given by its parent.
+ */
+public class NameView extends View {
+    private TextLayoutCache mCache;
+    private long mId;
+    private long mVersion;
+    private char[] mChars; // null for no text
+    private int mStart;
+    private int mLength;
+    private Layout mLayout;
+
+    public NameView(Context context) {
+        super(context);
+    }
+
+    public NameView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public NameView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /**
+     * Show the text of this item, laid out by the cache.
+     */
+    public void setText(TextLayoutCache cache, long id, long version, char[] chars, int start, int length) {
+        mCache = cache;
+        mId = id;
+        mVersion = version;
+        mChars = chars;
+        mStart = start;
+        mLength = length;
+        mLayout = null;
+        resolve();
+        invalidate();
+    }
+
+    public void clearText() {
+        mChars = null;
+        mLayout = null;
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        if (mCache != null) {
+            mCache.setWidth(w - getPaddingLeft() - getPaddingRight());
+        }
+        mLayout = null;
+        resolve();
+    }
+
+    private void resolve() {
+        if (mChars == null || getWidth() == 0) {
+            // Not sized yet; resolved once it is.
+            return;
+        }
+        mLayout = mCache.obtain(mId, mVersion, mChars, mStart, mLength);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        if (mChars != null) {
+            event.getText().add(new String(mChars, mStart, mLength));
+        }
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        if (mChars != null) {
+            info.setText(new String(mChars, mStart, mLength));
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads contact photos into ImageViews, decoded off the main thread at about the size they are
+ * shown. Decoded photos are kept in memory, in an LRU cache bounded in bytes, and on disk, where a
+ * photo read again skips both the provider and the scaling.
+ *
+ * A view asked for another photo drops its pending request, so a list flung past many rows only
+ * decodes what it stops on. All methods are meant to be called on the main thread.
+ */
+public class PhotoLoader {
+    private static final String TAG = "PhotoLoader";
+    private static final boolean DEBUG = false;
+
+    private static final String DISK_CACHE_DIR = "photos";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The version of a photo not known yet, as from a ContactPager before it has loaded all ids.
+     */
+    public static final long VERSION_UNKNOWN = 0;
+
+    private final ContentResolver mResolver;
+    private final int mSize;
+    private final LruCache<Key, Bitmap> mMemoryCache;
+    private final File mDiskCacheDir;
+    private final long mDiskCacheBytes;
+    private long mDiskBytes = -1; // guarded by mDiskCacheDir, -1 until counted
+    private final Executor mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Key mLookup = new Key(); // main thread
+    private final Key mUnversioned = new Key(); // main thread
+
+    /*
+     * The uri of a photo and its version. Filled again from the chars of each row bound, so a photo
+     * in memory is found without a String.
+     */
+    private static final class Key {
+        char[] uri = new char[64];
+        int length;
+        long version;
+        int hash;
+
+        Key() {
+        }
+
+        Key(Key key) {
+            uri = Arrays.copyOf(key.uri, key.length);
+            length = key.length;
+            version = key.version;
+            hash = key.hash;
+        }
+
+        Key set(char[] chars, int start, int length, long version) {
+            if (uri.length < length) {
+                uri = new char[length];
+            }
+            System.arraycopy(chars, start, uri, 0, length);
+            this.length = length;
+            this.version = version;
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + chars[start + i];
+            }
+            this.hash = 31 * hash + (int) (version ^ (version >>> 32));
+            return this;
+        }
+
+        boolean sameUri(Key key) {
+            if (length != key.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (uri[i] != key.uri[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && version == key.version && sameUri(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final class Request implements Runnable {
+        final ImageView view;
+        final Key key;
+        volatile boolean cancelled;
+
+        Request(ImageView view, Key key) {
+            this.view = view;
+            this.key = key;
+        }
+
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            // Loaded meanwhile for a request cancelled when it was already decoding
+            Bitmap bitmap = cached(key, new Key());
+            if (bitmap == null) {
+                // Not on disk under a version not known yet: it would be there again under the one found next
+                File file = (key.version != VERSION_UNKNOWN) ? diskFile(key) : null;
+                bitmap = (file != null) ? readDisk(file) : null;
+                if (bitmap == null && !cancelled) {
+                    bitmap = decode(Uri.parse(new String(key.uri, 0, key.length)));
+                    if (bitmap != null && file != null) {
+                        writeDisk(file, bitmap);
+                    }
+                }
+            }
+            if (bitmap == null) {
+                return;
+            }
+
+            // Worth keeping even if nobody waits for it anymore
+            mMemoryCache.put(key, bitmap);
+            final Bitmap loaded = bitmap;
+            mHandler.post(new Runnable() {
+                public void run() {
+                    if (view.getTag(R.id.photo_request) == Request.this) {
+                        view.setTag(R.id.photo_request, null);
+                        view.setImageBitmap(loaded);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @param size in pixels the photos are shown at.
+     * @param memoryCacheBytes at most taken by photos in memory.
+     * @param diskCacheBytes at most taken by photos on disk.
+     */
+    public PhotoLoader(Context context, int size, int memoryCacheBytes, long diskCacheBytes) {
+        this(context, size, memoryCacheBytes, diskCacheBytes, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    public PhotoLoader(Context context, int size, int memoryCacheBytes, long diskCacheBytes, Executor executor) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size " + size);
+        }
+
+        mResolver = context.getContentResolver();
+        mSize = size;
+        mMemoryCache = new LruCache<Key, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+        mDiskCacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
+        mDiskCacheBytes = diskCacheBytes;
+        mExecutor = executor;
+    }
+
+    /**
+     * Show the photo of this uri in the view, right away if it is in memory, else once loaded.
+     * Whatever the view was loading before is cancelled.
+     *
+     * A photo loaded under {@link #VERSION_UNKNOWN} is only kept in memory, and taken over by the
+     * first load of the same uri with a version.
+     *
+     * @param uri chars of the photo uri, or null for none; nothing is kept of them.
+     * @param version changes when the photo may have, such as the last update time of the contact.
+     */
+    public void load(ImageView view, char[] uri, int start, int length, long version) {
+        Key key = (uri != null && length > 0) ? mLookup.set(uri, start, length, version) : null;
+        Request pending = (Request) view.getTag(R.id.photo_request);
+        if (pending != null) {
+            // The same photo, or one of this uri whose version was not known yet
+            if (key != null && (pending.key.equals(key)
+                    || (pending.key.version == VERSION_UNKNOWN && pending.key.sameUri(key)))) {
+                return;
+            }
+            pending.cancelled = true;
+            view.setTag(R.id.photo_request, null);
+        }
+
+        Bitmap cached = (key != null) ? cached(key, mUnversioned) : null;
+        view.setImageBitmap(cached);
+        if (key == null || cached != null) {
+            return;
+        }
+
+        Request request = new Request(view, new Key(key));
+        view.setTag(R.id.photo_request, request);
+        mExecutor.execute(request);
+    }
+
+    /**
+     * Cancel what the view is loading, if anything, as when its row scrolls out of the list.
+     */
+    public void cancel(ImageView view) {
+        Request pending = (Request) view.getTag(R.id.photo_request);
+        if (pending != null) {
+            pending.cancelled = true;
+            view.setTag(R.id.photo_request, null);
+        }
+    }
+
+    /**
+     * Drop the photos kept in memory, as when the system runs low on it.
+     */
+    public void trimMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    /*
+     * The photo of the key in memory, or the one of its uri loaded before its version was known.
+     */
+    private Bitmap cached(Key key, Key unversioned) {
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap == null && key.version != VERSION_UNKNOWN) {
+            bitmap = mMemoryCache.remove(unversioned.set(key.uri, 0, key.length, VERSION_UNKNOWN));
+            if (bitmap != null) {
+                mMemoryCache.put(new Key(key), bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /* Background */
+    private Bitmap decode(Uri uri) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(uri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // The largest power of two keeping both sides at least the size shown
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= mSize
+                && options.outHeight / (options.inSampleSize * 2) >= mSize) {
+            options.inSampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        return decode(uri, options);
+    }
+
+    private Bitmap decode(Uri uri, BitmapFactory.Options options) {
+        InputStream in = null;
+        try {
+            in = mResolver.openInputStream(uri);
+            return (in != null) ? BitmapFactory.decodeStream(in, null, options) : null;
+        } catch (IOException e) {
+            // No photo
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private File diskFile(Key key) {
+        // 64 bit FNV-1a of the uri and the version, and the size
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length; i++) {
+            hash ^= key.uri[i];
+            hash *= 0x100000001b3L;
+        }
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash ^= (key.version >>> shift) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return new File(mDiskCacheDir, Long.toHexString(hash) + '_' + mSize);
+    }
+
+    /* Background; a file only gets its name once written, so this never reads half of one */
+    private Bitmap readDisk(File file) {
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap != null) {
+            // Least recently used goes first when trimming
+            file.setLastModified(System.currentTimeMillis());
+            if (DEBUG) Log.v(TAG, "disk hit " + file.getName());
+        }
+        return bitmap;
+    }
+
+    /* Background */
+    private void writeDisk(File file, Bitmap bitmap) {
+        synchronized (mDiskCacheDir) {
+            if (!mDiskCacheDir.isDirectory() && !mDiskCacheDir.mkdirs()) {
+                return;
+            }
+
+            File temp = new File(mDiskCacheDir, file.getName() + TEMP_SUFFIX);
+            OutputStream out = null;
+            boolean written = false;
+            try {
+                out = new FileOutputStream(temp);
+                written = bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot cache photo " + file, e);
+            } finally {
+                close(out);
+            }
+            if (!written || !temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+
+            if (mDiskBytes < 0) {
+                mDiskBytes = 0;
+                File[] files = mDiskCacheDir.listFiles();
+                for (int i = 0; files != null && i < files.length; i++) {
+                    mDiskBytes += files[i].length();
+                }
+            } else {
+                mDiskBytes += file.length();
+            }
+            if (mDiskBytes > mDiskCacheBytes) {
+                trimDisk();
+            }
+        }
+    }
+
+    /*
+     * Delete the least recently used photos down to three quarters of the maximum.
+     */
+    private void trimDisk() {
+        File[] files = mDiskCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return (diff < 0) ? -1 : (diff > 0) ? 1 : 0;
+            }
+        });
+        for (int i = 0; i < files.length && mDiskBytes > mDiskCacheBytes * 3 / 4; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                mDiskBytes -= length;
+            }
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Rows of a list inflated ahead of time on a background thread, typically while the first query
+ * runs, so the first layout of the list takes them instead of inflating each one on the main
+ * thread. An adapter takes a row with obtain(), and inflates its own once the pool is empty.
+ *
+ * The layout must only hold views that can be created off the main thread, as plain layouts,
+ * TextViews, ImageViews and ViewStubs are. Should the inflation throw anyway, prewarming stops and
+ * the adapter is left to inflate on the main thread.
+ */
+public class RowPool {
+    private static final String TAG = "RowPool";
+    private static final boolean DEBUG = false;
+
+    private final LayoutInflater mInflater;
+    private final int mLayout;
+    private final ViewGroup mParent;
+    private final Executor mExecutor;
+    private final ArrayList<View> mRows = new ArrayList<View>(); // guarded by itself
+    private volatile boolean mCleared;
+
+    /**
+     * @param parent the rows are inflated for, as with LayoutInflater.inflate(layout, parent, false).
+     */
+    public RowPool(Context context, int layout, ViewGroup parent) {
+        this(context, layout, parent, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    public RowPool(Context context, int layout, ViewGroup parent, Executor executor) {
+        // An inflater of its own, as one is not safe to use from two threads at once.
+        mInflater = LayoutInflater.from(context).cloneInContext(context);
+        mLayout = layout;
+        mParent = parent;
+        mExecutor = executor;
+    }
+
+    /**
+     * Inflate this many rows on the background thread. They can be obtained as soon as each one
+     * is ready.
+     */
+    public void prewarm(final int count) {
+        mCleared = false;
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                for (int i = 0; i < count && !mCleared; i++) {
+                    View row;
+                    try {
+                        row = mInflater.inflate(mLayout, mParent, false);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Rows cannot be inflated off the main thread", e);
+                        return;
+                    }
+
+                    synchronized (mRows) {
+                        if (!mCleared) {
+                            mRows.add(row);
+                        }
+                    }
+                }
+                if (DEBUG) Log.v(TAG, count + " rows prewarmed");
+            }
+        });
+    }
+
+    /**
+     * @return a row inflated ahead, or null if none is ready.
+     */
+    public View obtain() {
+        synchronized (mRows) {
+            int size = mRows.size();
+            return (size > 0) ? mRows.remove(size - 1) : null;
+        }
+    }
+
+    /**
+     * @return how many rows are ready.
+     */
+    public int getCount() {
+        synchronized (mRows) {
+            return mRows.size();
+        }
+    }
+
+    /**
+     * Drop the rows ready and stop prewarming, as when the list goes away.
+     */
+    public void clear() {
+        mCleared = true;
+        synchronized (mRows) {
+            mRows.clear();
+        }
+    }
+}
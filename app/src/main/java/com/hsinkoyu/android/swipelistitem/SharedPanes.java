@@ -0,0 +1,176 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListView;
+
+/**
+ * Backgrounds shared by all the list items of a ListView, one per layout. A background left as a
+ * ViewStub is not inflated in every list item swiped: while it is uncovered, the item draws a
+ * bitmap of it, rendered once for the whole list; only the list item left open gets the real
+ * view, so its buttons can be pressed. That view moves to another list item when it is opened.
+ *
+ * The bitmap is rendered from the view as it is inflated, at the size of the list item. Call
+ * invalidate() if what the background shows changes. The real view has no id, so as not to be
+ * found in place of the ViewStub; bind it to the list item it is attached to with
+ * SwipeListItem.setOnSharedPaneAttachedListener().
+ */
+public class SharedPanes {
+    /**
+     * The background of one layout.
+     */
+    public static final class Pane {
+        private final LayoutInflater mInflater;
+        private final int mLayout;
+        private View mView; // the real one, once inflated
+        private ViewGroup mParent; // the list item it is attached to, if any
+        private SwipeListItem mOwner; // that attached it there
+        private Bitmap mBitmap;
+
+        Pane(LayoutInflater inflater, int layout) {
+            mInflater = inflater;
+            mLayout = layout;
+        }
+
+        /**
+         * Draw the bitmap of the background, rendering it first if it is not at this size.
+         *
+         * @param parent the list item drawn in, the view is inflated against.
+         */
+        void draw(Canvas canvas, ViewGroup parent, int width, int height) {
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+
+            if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+                render(parent, width, height);
+            }
+            if (mBitmap != null) {
+                canvas.drawBitmap(mBitmap, 0, 0, null);
+            }
+        }
+
+        private void render(ViewGroup parent, int width, int height) {
+            View view = getView(parent);
+            if (mParent == null) {
+                view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+                view.layout(0, 0, width, height);
+            } else if (view.getWidth() != width || view.getHeight() != height) {
+                // Laid out by the list item it is in; rendered once back.
+                return;
+            }
+
+            // The old one may still be in the display lists of list items; left to the GC.
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            // At rest, as a view not pressed nor translated
+            float translationX = view.getTranslationX();
+            view.setTranslationX(0);
+            view.draw(new Canvas(mBitmap));
+            view.setTranslationX(translationX);
+        }
+
+        /**
+         * Put the real view in this list item, behind the others. The SwipeListItem it was
+         * attached by before is told it lost it.
+         *
+         * @return the view.
+         */
+        View attach(SwipeListItem owner, ViewGroup parent, ViewGroup.LayoutParams params) {
+            View view = getView(parent);
+            if (mOwner == owner && mParent == parent) {
+                return view;
+            }
+
+            SwipeListItem previous = mOwner;
+            removeView();
+            mOwner = owner;
+            mParent = parent;
+            if (previous != null && previous != owner) {
+                previous.onSharedPaneTaken();
+            }
+
+            view.setTranslationX(0);
+            view.setClipBounds(null);
+            view.setVisibility(View.VISIBLE);
+            parent.addView(view, 0, params);
+            return view;
+        }
+
+        /**
+         * Take the real view out of its list item, if this SwipeListItem attached it there.
+         */
+        void detach(SwipeListItem owner) {
+            if (mOwner == owner) {
+                removeView();
+                mOwner = null;
+                mParent = null;
+            }
+        }
+
+        private void removeView() {
+            if (mParent != null) {
+                mParent.removeView(mView);
+            }
+        }
+
+        private View getView(ViewGroup parent) {
+            if (mView == null) {
+                // Against a list item, for the layout attributes of its root
+                mView = mInflater.inflate(mLayout, parent, false);
+                // Not to be found in place of the ViewStub of the list item it is in
+                mView.setId(View.NO_ID);
+            }
+            return mView;
+        }
+
+        private void invalidate() {
+            mBitmap = null;
+        }
+    }
+
+    private final LayoutInflater mInflater;
+    private final SparseArray<Pane> mPanes = new SparseArray<Pane>();
+
+    public static SharedPanes from(ListView listView) {
+        SharedPanes panes = (SharedPanes) listView.getTag(R.id.shared_panes);
+        if (panes == null) {
+            panes = new SharedPanes(LayoutInflater.from(listView.getContext()));
+            listView.setTag(R.id.shared_panes, panes);
+        }
+        return panes;
+    }
+
+    private SharedPanes(LayoutInflater inflater) {
+        mInflater = inflater;
+    }
+
+    /**
+     * @return the background of this layout, as inflated by a ViewStub.
+     */
+    Pane get(int layout) {
+        Pane pane = mPanes.get(layout);
+        if (pane == null) {
+            pane = new Pane(mInflater, layout);
+            mPanes.put(layout, pane);
+        }
+        return pane;
+    }
+
+    /**
+     * Render the backgrounds again the next time they are drawn.
+     */
+    public void invalidate() {
+        for (int i = 0; i < mPanes.size(); i++) {
+            mPanes.valueAt(i).invalidate();
+        }
+    }
+}
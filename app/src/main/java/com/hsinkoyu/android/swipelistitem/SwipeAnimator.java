@@ -0,0 +1,79 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.view.Choreographer;
+import android.widget.ListView;
+import java.util.ArrayList;
+
+/**
+ * One frame ticker shared by every SwipeListItem of a list. Whatever the number of rows
+ * settling, or being dragged with MOVE_DISPATCH_PER_FRAME, at the same time, only one
+ * Choreographer callback is posted per frame, and none once nothing is moving.
+ */
+public class SwipeAnimator implements Choreographer.FrameCallback {
+    private static final String TAG = "SwipeAnimator";
+
+    private final ArrayList<SwipeListItem> mItems = new ArrayList<SwipeListItem>();
+    // Rows stepped in the current frame; kept around so a frame does not allocate.
+    private final ArrayList<SwipeListItem> mFrameItems = new ArrayList<SwipeListItem>();
+    private boolean mScheduled = false;
+
+    public static SwipeAnimator from(ListView listView) {
+        SwipeAnimator animator = (SwipeAnimator) listView.getTag(R.id.swipe_animator);
+        if (animator == null) {
+            animator = new SwipeAnimator();
+            listView.setTag(R.id.swipe_animator, animator);
+        }
+        return animator;
+    }
+
+    void start(SwipeListItem item) {
+        if (!mItems.contains(item)) {
+            mItems.add(item);
+        }
+        schedule();
+    }
+
+    void stop(SwipeListItem item) {
+        mItems.remove(item);
+        if (mItems.isEmpty() && mScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            mScheduled = false;
+        }
+    }
+
+    public boolean isRunning() {
+        return !mItems.isEmpty();
+    }
+
+    public void doFrame(long frameTimeNanos) {
+        mScheduled = false;
+
+        // Listener callbacks may start or stop other rows while we are iterating.
+        // Not addAll(), which copies through a new array.
+        for (int i = 0; i < mItems.size(); i++) {
+            mFrameItems.add(mItems.get(i));
+        }
+        for (int i = 0; i < mFrameItems.size(); i++) {
+            SwipeListItem item = mFrameItems.get(i);
+            if (mItems.contains(item)) {
+                item.doFrame(frameTimeNanos);
+            }
+        }
+        mFrameItems.clear();
+
+        if (!mItems.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (!mScheduled) {
+            Choreographer.getInstance().postFrameCallback(this);
+            mScheduled = true;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ListView;
+import java.util.ArrayList;
+
+/**
+ * Makes every item of a ListView swipable from a single touch listener set on the ListView.
+ *
+ * On touch down, the list item under the finger is hit-tested and handed to a SwipeListItem
+ * taken from a small pool, so there is no per-item object at all. A SwipeListItem only stays
+ * with a list item while it is swiped, settling or left open. The ListView keeps the touch
+ * events, and so scrolling and item clicks, until a swiping direction is decided.
+ *
+ * Only one list item can be open at a time: touching another one restores the rest.
+ *
+ * Swipe states are remembered by stable item id, not by view. Call onBindView() from the
+ * adapter's bindView() so a recycled view gets the state of the item it now shows, without
+ * animation. This requires OFFSET_TRANSLATION, as offsetLeftAndRight() does not survive the
+ * layout following a bind.
+ *
+ * With an OnDismissListener, a swiped list item is dismissed: its row collapses, then the
+ * listener is told to remove the item from the adapter. A swipe that lands as its row is recycled
+ * or restored is dismissed right away, without a collapse.
+ */
+public class SwipeCoordinator implements View.OnTouchListener {
+    private static final String TAG = "SwipeCoordinator";
+
+    private static final int DISMISS_DURATION = 200; // milliseconds for a row to collapse
+
+    public interface OnDismissListener {
+        /**
+         * The list item of the given id has been swiped and its row collapsed. Remove it from the
+         * adapter now: its row gets its height back for the next item it shows.
+         */
+        public void onDismiss(long id);
+    }
+
+    private final Context mContext;
+    private final ListView mListView;
+    private final int mAcceptedDirections;
+    private final int mType;
+
+    private final ArrayList<SwipeListItem> mItems = new ArrayList<SwipeListItem>();
+    private SwipeListItem mActiveItem; // the one following the current gesture
+    private boolean mClaimed; // the ListView was told to cancel the current gesture
+    private final SwipeStates mStates = new SwipeStates();
+
+    private SwipeListItem.OnSwipeListener mListener;
+    private int mOffsetMode = SwipeListItem.OFFSET_TRANSLATION;
+    private boolean mHardwareLayerEnabled = true;
+    private int mMoveDispatchMode = SwipeListItem.MOVE_DISPATCH_PER_EVENT;
+    private int mArbitrationMode = SwipeListItem.ARBITRATION_THRESHOLDS;
+    private boolean mSharedPanesEnabled = false;
+    private SwipeListItem.OnSharedPaneAttachedListener mSharedPaneListener;
+    private SwipeMetrics mMetrics;
+    private TimeInterpolator mInterpolator;
+
+    private OnDismissListener mDismissListener;
+    private final ArrayList<SwipeListItem> mDismissing = new ArrayList<SwipeListItem>();
+    private final ArrayList<ValueAnimator> mCollapses = new ArrayList<ValueAnimator>(); // along with mDismissing
+    private SwipeListItem mReleasing; // being unbound or restored, its settle landing on the way
+
+    /*
+     * One per pooled item, to know which item a callback comes from.
+     */
+    private class Dispatcher implements SwipeListItem.OnSwipeListener {
+        private SwipeListItem mItem;
+
+        public void onReady() {
+            if (mListener != null) {
+                mListener.onReady();
+            }
+        }
+
+        public void onStart(int direction, int distance) {
+            if (mListener != null) {
+                mListener.onStart(direction, distance);
+            }
+        }
+
+        public void onMove(int direction, int distance) {
+            if (mListener != null) {
+                mListener.onMove(direction, distance);
+            }
+        }
+
+        public void onGoCancelling(int direction, int distance) {
+            if (mListener != null) {
+                mListener.onGoCancelling(direction, distance);
+            }
+        }
+
+        public void onCancelled(int direction, int distance) {
+            if (mListener != null) {
+                mListener.onCancelled(direction, distance);
+            }
+        }
+
+        public void onGoSwiping(int direction, int distance) {
+            if (mListener != null) {
+                mListener.onGoSwiping(direction, distance);
+            }
+        }
+
+        public void onSwiped(int direction, int distance) {
+            if (mListener != null) {
+                mListener.onSwiped(direction, distance);
+            }
+            if (mDismissListener != null && mItem.getItemId() != AdapterView.INVALID_ROW_ID) {
+                if (mItem == mReleasing) {
+                    // Its row is about to show another item, or to head back; no collapse there.
+                    mStates.remove(mItem.getItemId());
+                    dispatchDismiss(mItem.getItemId(), false);
+                } else {
+                    collapse(mItem);
+                }
+            }
+        }
+    }
+
+    public static SwipeCoordinator attach(ListView listView, int acceptedDirections, int type) {
+        SwipeCoordinator coordinator = new SwipeCoordinator(listView, acceptedDirections, type);
+        listView.setOnTouchListener(coordinator);
+        return coordinator;
+    }
+
+    public void detach() {
+        endDismissals();
+        restoreAll();
+        mListView.setOnTouchListener(null);
+    }
+
+    public SwipeCoordinator(ListView listView, int acceptedDirections, int type) {
+        if (listView == null) {
+            throw new IllegalArgumentException("Null listView");
+        }
+
+        mContext = listView.getContext();
+        mListView = listView;
+        mAcceptedDirections = acceptedDirections;
+        mType = type;
+    }
+
+    public void setOnSwipeListener(SwipeListItem.OnSwipeListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Dismiss list items once swiped, or leave them open with null (the default).
+     */
+    public void setOnDismissListener(OnDismissListener listener) {
+        mDismissListener = listener;
+    }
+
+    /**
+     * See SwipeListItem.setOffsetMode(). OFFSET_TRANSLATION by default.
+     */
+    public void setOffsetMode(int mode) {
+        mOffsetMode = mode;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setOffsetMode(mode);
+        }
+    }
+
+    /**
+     * See SwipeListItem.setHardwareLayerEnabled(). Enabled by default.
+     */
+    public void setHardwareLayerEnabled(boolean enabled) {
+        mHardwareLayerEnabled = enabled;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setHardwareLayerEnabled(enabled);
+        }
+    }
+
+    /**
+     * See SwipeListItem.setMoveDispatchMode(). MOVE_DISPATCH_PER_EVENT by default.
+     */
+    public void setMoveDispatchMode(int mode) {
+        mMoveDispatchMode = mode;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setMoveDispatchMode(mode);
+        }
+    }
+
+    /**
+     * See SwipeListItem.setArbitrationMode(). ARBITRATION_THRESHOLDS by default. With
+     * ARBITRATION_SLOP, the ListView only sees the beginning of a swipe up to the touch slop, short
+     * of its own scrolling, and nothing of it once cancelled.
+     */
+    public void setArbitrationMode(int mode) {
+        mArbitrationMode = mode;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setArbitrationMode(mode);
+        }
+    }
+
+    /**
+     * See SwipeListItem.setSharedPanesEnabled(). Off by default. As only one list item is open at
+     * a time, the real view of each background is inflated once for the whole list.
+     */
+    public void setSharedPanesEnabled(boolean enabled) {
+        mSharedPanesEnabled = enabled;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setSharedPanesEnabled(enabled);
+        }
+    }
+
+    /**
+     * See SwipeListItem.setOnSharedPaneAttachedListener(). The id is the one given to onBindView().
+     */
+    public void setOnSharedPaneAttachedListener(SwipeListItem.OnSharedPaneAttachedListener listener) {
+        mSharedPaneListener = listener;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setOnSharedPaneAttachedListener(listener);
+        }
+    }
+
+    /**
+     * See SwipeListItem.setMetrics(). One SwipeMetrics records the gestures of the whole list.
+     */
+    public void setMetrics(SwipeMetrics metrics) {
+        mMetrics = metrics;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * @return the velocity of the current gesture along the swiping direction, in pixels per
+     * second, or 0 if no list item is being swiped.
+     */
+    public float getVelocity() {
+        return (mActiveItem != null) ? mActiveItem.getVelocity() : 0;
+    }
+
+    public void setInterpolator(TimeInterpolator interpolator) {
+        mInterpolator = interpolator;
+        for (int i = 0; i < mItems.size(); i++) {
+            mItems.get(i).setInterpolator(interpolator);
+        }
+    }
+
+    /**
+     * Create SwipeListItems for the pool ahead of the first touches, as when the main thread is
+     * idle, so the first swipes do not pay for them.
+     */
+    public void prewarm(int count) {
+        for (int i = mItems.size(); i < count; i++) {
+            newItem();
+        }
+    }
+
+    /**
+     * Restore every list item that is swiped or on its way.
+     */
+    public void restoreAll() {
+        restoreOthers(null, AdapterView.INVALID_ROW_ID);
+    }
+
+    /**
+     * @return the swipe states by item id, to be saved along with the instance state.
+     */
+    public SwipeStates getStates() {
+        return mStates;
+    }
+
+    /**
+     * Take over previously saved swipe states. The visible items get them on their next bind.
+     */
+    public void setStates(SwipeStates states) {
+        mStates.copyFrom(states);
+    }
+
+    /**
+     * To be called once the view of a list item is bound to the item of the given id.
+     */
+    public void onBindView(View row, long id) {
+        for (int i = 0; i < mItems.size(); i++) {
+            SwipeListItem item = mItems.get(i);
+            if (item.getView() == row) {
+                if (item.getItemId() == id) {
+                    // Still the same item, leave whatever it is doing alone.
+                    return;
+                }
+                if (item == mActiveItem) {
+                    mActiveItem = null;
+                }
+                int dismissing = mDismissing.indexOf(item);
+                if (dismissing >= 0) {
+                    // Scrolled away while collapsing; the dismissal completes right away.
+                    finishDismiss(dismissing, false);
+                } else {
+                    release(item);
+                }
+            }
+        }
+
+        int index = mStates.indexOfKey(id);
+        if (index >= 0) {
+            obtain(row, id).jumpTo(mStates.directionAt(index), mStates.offsetAt(index));
+        }
+    }
+
+    public boolean onTouch(View v, MotionEvent event) {
+        int action = event.getActionMasked();
+
+        if (action == MotionEvent.ACTION_DOWN) {
+            mActiveItem = null;
+            mClaimed = false;
+
+            int position = mListView.pointToPosition((int) event.getX(), (int) event.getY());
+            View row = findRow(position);
+            if (row != null && isDismissing(row)) {
+                // Going away; nothing to swipe there.
+                row = null;
+            }
+            long id = (row != null) ? mListView.getItemIdAtPosition(position) : AdapterView.INVALID_ROW_ID;
+            restoreOthers(row, id);
+            if (row != null) {
+                mActiveItem = obtain(row, id);
+            }
+        }
+
+        if (mActiveItem == null) {
+            return false;
+        }
+
+        mActiveItem.onTouch(mActiveItem.getView(), event);
+        boolean owned = mActiveItem.isTouchOwner();
+
+        if (owned && !mClaimed && action != MotionEvent.ACTION_DOWN) {
+            // The ListView has seen the beginning of this gesture; let it drop its pressed state,
+            // long press and scrolling.
+            mClaimed = true;
+            MotionEvent cancel = MotionEvent.obtain(event);
+            cancel.setAction(MotionEvent.ACTION_CANCEL);
+            mListView.onTouchEvent(cancel);
+            cancel.recycle();
+        }
+
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mActiveItem = null;
+        }
+
+        return owned;
+    }
+
+    private View findRow(int position) {
+        if (position == AdapterView.INVALID_POSITION) {
+            return null;
+        }
+
+        View row = mListView.getChildAt(position - mListView.getFirstVisiblePosition());
+        if (row == null || row.findViewById(R.id.center) == null) {
+            // Headers, footers and the like are not swipable.
+            return null;
+        }
+        return row;
+    }
+
+    private void restoreOthers(View row, long id) {
+        for (int i = 0; i < mItems.size(); i++) {
+            SwipeListItem item = mItems.get(i);
+            if (item.getView() != row && !item.isIdle() && !mDismissing.contains(item)) {
+                mReleasing = item;
+                item.restoreView();
+                mReleasing = null;
+            }
+        }
+        // Open items scrolled out of sight are forgotten as well.
+        mStates.clearExcept(id);
+    }
+
+    private SwipeListItem obtain(View row, long id) {
+        SwipeListItem idle = null;
+        for (int i = 0; i < mItems.size(); i++) {
+            SwipeListItem item = mItems.get(i);
+            if (item.getView() == row) {
+                if (item.getItemId() == id) {
+                    return item;
+                }
+                release(item);
+            }
+            if (idle == null && item.isIdle()) {
+                idle = item;
+            }
+        }
+
+        if (idle == null) {
+            idle = newItem();
+        } else if (idle.getView() != null) {
+            release(idle);
+        }
+        idle.bind(row, id);
+        return idle;
+    }
+
+    private void release(SwipeListItem item) {
+        mReleasing = item;
+        item.unbind();
+        mReleasing = null;
+    }
+
+    private SwipeListItem newItem() {
+        Dispatcher dispatcher = new Dispatcher();
+        SwipeListItem item = new SwipeListItem(mContext, mListView, mAcceptedDirections, mType, null, dispatcher);
+        dispatcher.mItem = item;
+        item.setOffsetMode(mOffsetMode);
+        item.setHardwareLayerEnabled(mHardwareLayerEnabled);
+        item.setInterpolator(mInterpolator);
+        item.setMoveDispatchMode(mMoveDispatchMode);
+        item.setArbitrationMode(mArbitrationMode);
+        item.setSharedPanesEnabled(mSharedPanesEnabled);
+        item.setOnSharedPaneAttachedListener(mSharedPaneListener);
+        item.setMetrics(mMetrics);
+        item.setStates(mStates);
+        mItems.add(item);
+        return item;
+    }
+
+    private boolean isDismissing(View row) {
+        for (int i = 0; i < mDismissing.size(); i++) {
+            if (mDismissing.get(i).getView() == row) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Animate the height of a swiped row down to zero, then have its item removed.
+     */
+    private void collapse(final SwipeListItem item) {
+        final View row = item.getView();
+        final ViewGroup.LayoutParams lp = row.getLayoutParams();
+        final int height = row.getHeight();
+
+        ValueAnimator collapse = ValueAnimator.ofFloat(0.0f, 1.0f);
+        collapse.setDuration(DISMISS_DURATION);
+        collapse.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            public void onAnimationUpdate(ValueAnimator animation) {
+                lp.height = Math.round(height * (1.0f - animation.getAnimatedFraction()));
+                row.setLayoutParams(lp);
+            }
+        });
+        collapse.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                int index = mDismissing.indexOf(item);
+                if (index >= 0) {
+                    finishDismiss(index, true);
+                }
+            }
+        });
+
+        mDismissing.add(item);
+        mCollapses.add(collapse);
+        // The height to give back, as declared rather than as measured.
+        row.setTag(R.id.dismiss_height, lp.height);
+        collapse.start();
+    }
+
+    private void finishDismiss(int index, boolean now) {
+        SwipeListItem item = mDismissing.remove(index);
+        ValueAnimator collapse = mCollapses.remove(index);
+        View row = item.getView();
+        long id = item.getItemId();
+
+        collapse.removeAllListeners();
+        collapse.cancel();
+        item.unbind();
+        mStates.remove(id);
+
+        ViewGroup.LayoutParams lp = row.getLayoutParams();
+        lp.height = (Integer) row.getTag(R.id.dismiss_height);
+        row.setLayoutParams(lp);
+        dispatchDismiss(id, now);
+    }
+
+    private void dispatchDismiss(final long id, boolean now) {
+        if (now) {
+            if (mDismissListener != null) {
+                mDismissListener.onDismiss(id);
+            }
+        } else {
+            // Not while the ListView is binding.
+            mListView.post(new Runnable() {
+                public void run() {
+                    if (mDismissListener != null) {
+                        mDismissListener.onDismiss(id);
+                    }
+                }
+            });
+        }
+    }
+
+    private void endDismissals() {
+        while (!mDismissing.isEmpty()) {
+            finishDismiss(mDismissing.size() - 1, true);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * A layout for swipable list items. The foreground (R.id.center) and the backgrounds
+ * (R.id.top, R.id.bottom, R.id.left, R.id.right) are all stacked at the size of the layout,
+ * like a RelativeLayout whose children are match_parent and centered, but:
+ *
+ *  - It is measured in a single pass.
+ *  - While the foreground is opaque and not moved, the backgrounds are not drawn at all.
+ *  - Once moved, each background is clipped to the strip the foreground exposes.
+ *  - A background of SharedPanes is drawn from its bitmap by a plain child view, added on first
+ *    use, moved by translation and clipped as the other backgrounds.
+ *
+ * The children keep their ids, so SwipeListItem finds them the same way.
+ */
+public class SwipeItemLayout extends ViewGroup {
+
+    private View mCenter;
+    private boolean mCovered = true; // the foreground hides every background
+    private final Rect mExposed = new Rect();
+    private final Rect mClip = new Rect();
+    private SharedPaneView mSharedPaneView; // null until a shared background is first shown
+
+    /*
+     * Draws the bitmap of a shared background.
+     */
+    private static final class SharedPaneView extends View {
+        private SharedPanes.Pane mPane;
+
+        SharedPaneView(Context context) {
+            super(context);
+        }
+
+        void setPane(SharedPanes.Pane pane) {
+            if (pane != mPane) {
+                mPane = pane;
+                invalidate();
+            }
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            if (mPane != null) {
+                mPane.draw(canvas, (ViewGroup) getParent(), getWidth(), getHeight());
+            }
+        }
+    }
+
+    public SwipeItemLayout(Context context) {
+        super(context);
+    }
+
+    public SwipeItemLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public SwipeItemLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+        mCenter = findViewById(R.id.center);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mCenter == null) {
+            mCenter = findViewById(R.id.center);
+        }
+
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = MeasureSpec.getSize(heightMeasureSpec);
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int verticalPadding = getPaddingTop() + getPaddingBottom();
+
+        if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY && mCenter != null) {
+            // The foreground decides the height, the backgrounds follow.
+            mCenter.measure(MeasureSpec.makeMeasureSpec(Math.max(width - horizontalPadding, 0), MeasureSpec.EXACTLY),
+                    getChildMeasureSpec(heightMeasureSpec, verticalPadding, mCenter.getLayoutParams().height));
+            height = mCenter.getMeasuredHeight() + verticalPadding;
+            if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.AT_MOST) {
+                height = Math.min(height, MeasureSpec.getSize(heightMeasureSpec));
+            }
+        }
+
+        int childWidthSpec = MeasureSpec.makeMeasureSpec(Math.max(width - horizontalPadding, 0), MeasureSpec.EXACTLY);
+        int childHeightSpec = MeasureSpec.makeMeasureSpec(Math.max(height - verticalPadding, 0), MeasureSpec.EXACTLY);
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE) {
+                child.measure(childWidthSpec, childHeightSpec);
+            }
+        }
+
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE) {
+                child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+            }
+        }
+
+        onPanesMoved();
+    }
+
+    /**
+     * To be called whenever the foreground or a background has been moved, by layout position or
+     * by translation. Only the clip bounds of the backgrounds are updated, which are render
+     * properties; the layout itself is only redrawn when the backgrounds get hidden or uncovered.
+     */
+    public void onPanesMoved() {
+        boolean covered;
+
+        if (mCenter == null || !mCenter.isOpaque()) {
+            covered = false;
+            mExposed.setEmpty();
+        } else {
+            int centerLeft = mCenter.getLeft() + (int) mCenter.getTranslationX();
+            int centerTop = mCenter.getTop() + (int) mCenter.getTranslationY();
+            int centerRight = centerLeft + mCenter.getWidth();
+            int centerBottom = centerTop + mCenter.getHeight();
+
+            mExposed.set(0, 0, getWidth(), getHeight());
+            if (centerLeft > 0) {
+                mExposed.right = centerLeft;
+            } else if (centerRight < getWidth()) {
+                mExposed.left = centerRight;
+            } else if (centerTop > 0) {
+                mExposed.bottom = centerTop;
+            } else if (centerBottom < getHeight()) {
+                mExposed.top = centerBottom;
+            } else {
+                mExposed.setEmpty();
+            }
+            covered = mExposed.isEmpty();
+        }
+
+        if (covered != mCovered) {
+            mCovered = covered;
+            invalidate();
+        }
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View pane = getChildAt(i);
+            if (pane == mCenter || pane.getVisibility() != VISIBLE) {
+                continue;
+            }
+
+            if (mCovered || mExposed.isEmpty()) {
+                // Not opaque, nothing to clip; or not drawn at all.
+                pane.setClipBounds(null);
+                continue;
+            }
+
+            int paneLeft = pane.getLeft() + (int) pane.getTranslationX();
+            int paneTop = pane.getTop() + (int) pane.getTranslationY();
+            mClip.set(mExposed);
+            if (!mClip.intersect(paneLeft, paneTop, paneLeft + pane.getWidth(), paneTop + pane.getHeight())) {
+                mClip.setEmpty();
+            }
+            mClip.offset(-paneLeft, -paneTop);
+            pane.setClipBounds(mClip);
+        }
+    }
+
+    /**
+     * Draw this shared background translated by this offset, behind the foreground, or stop with
+     * null. Call onPanesMoved() next, as for the other backgrounds. Only a change of background
+     * or of visibility redraws anything; moving it only changes render properties.
+     */
+    void setSharedPane(SharedPanes.Pane pane, int x, int y) {
+        if (pane == null) {
+            if (mSharedPaneView != null && mSharedPaneView.getVisibility() == VISIBLE) {
+                mSharedPaneView.setVisibility(INVISIBLE);
+            }
+            return;
+        }
+
+        if (mSharedPaneView == null) {
+            mSharedPaneView = new SharedPaneView(getContext());
+            // Behind the others, without a layout pass of the list
+            addViewInLayout(mSharedPaneView, 0, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT), true);
+            int width = Math.max(getWidth() - getPaddingLeft() - getPaddingRight(), 0);
+            int height = Math.max(getHeight() - getPaddingTop() - getPaddingBottom(), 0);
+            mSharedPaneView.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+            mSharedPaneView.layout(getPaddingLeft(), getPaddingTop(), getPaddingLeft() + width, getPaddingTop() + height);
+        }
+        mSharedPaneView.setPane(pane);
+        mSharedPaneView.setVisibility(VISIBLE);
+        mSharedPaneView.setTranslationX(x);
+        mSharedPaneView.setTranslationY(y);
+    }
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        if (child != mCenter && mCovered) {
+            return false;
+        }
+        return super.drawChild(canvas, child, drawingTime);
+    }
+}
@@ -8,35 +8,46 @@ import android.content.Context;
 import android.view.View;
 import java.lang.IllegalArgumentException;
 import android.util.Log;
-import java.lang.Math;
 import android.view.MotionEvent;
 import android.widget.ListView;
-import android.os.Handler;
-import android.view.GestureDetector;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.animation.TimeInterpolator;
 import android.widget.AdapterView;
 
+/**
+ * Adapts a SwipeEngine, which holds the gesture logic, to the views of a list item: it feeds the
+ * engine with touch events and frames, and moves the foreground and backgrounds where it says.
+ */
 public class SwipeListItem implements View.OnTouchListener {
     private static final String TAG = "SwipeListItem";
+    private static final boolean DEBUG = false;
 
     public static final int TYPE_PULL_OUT = 0;
     public static final int TYPE_OPEN_PAGE = 1;
 
-    public static final int SWIPE_STILL = 0x00;
+    public static final int SWIPE_STILL = SwipeEngine.SWIPE_STILL;
     // Accepted directions
-    public static final int SWIPE_UP    = 0x01; // Not supported yet
-    public static final int SWIPE_DOWN  = 0x02; // Not supported yet
-    public static final int SWIPE_LEFT  = 0x04;
-    public static final int SWIPE_RIGHT = 0x08;
+    public static final int SWIPE_UP    = SwipeEngine.SWIPE_UP; // Not supported yet
+    public static final int SWIPE_DOWN  = SwipeEngine.SWIPE_DOWN; // Not supported yet
+    public static final int SWIPE_LEFT  = SwipeEngine.SWIPE_LEFT;
+    public static final int SWIPE_RIGHT = SwipeEngine.SWIPE_RIGHT;
+
+    // How the views are moved
+    public static final int OFFSET_LAYOUT      = 0; // offsetLeftAndRight(), moves the layout position
+    public static final int OFFSET_TRANSLATION = 1; // setTranslationX(), only changes render properties
 
-    private final int H_SWIPING_THRESHOLD = 20; // horizontal swiping threshold
-    private final int V_SWIPING_THRESHOLD = 20; // vertical swiping threshold
-    private final float H_SWIPED_THRESHOLD_RATIO = 1.0f / 2.0f; // half of the list item width
-    private final float V_SWIPED_THRESHOLD_RATIO = 1.0f / 2.0f; // half of the list item height
-    private final int SMOOTH_SWIPING_DELAY = 1; // 1 millisecond
-    private final int SMOOTH_SWIPING_STEP = 50; // 50 pixels
+    // How a swipe is told from a scroll
+    public static final int ARBITRATION_THRESHOLDS = SwipeEngine.ARBITRATION_THRESHOLDS; // by the distance along either axis
+    public static final int ARBITRATION_SLOP       = SwipeEngine.ARBITRATION_SLOP; // once, out of the touch slop, by the dominant axis
 
-    private final int RESTORING_VIEW_DELAY = 1;
-    private final int RESTORING_VIEW_STEP = 200; // 200 pixels
+    // How often OnSwipeListener.onMove() is called
+    public static final int MOVE_DISPATCH_PER_EVENT = SwipeEngine.MOVE_DISPATCH_PER_EVENT; // for every ACTION_MOVE
+    public static final int MOVE_DISPATCH_PER_FRAME = SwipeEngine.MOVE_DISPATCH_PER_FRAME; // once per frame, with the latest distance
+
+    private final int FLING_VELOCITY_FACTOR = 16; // times the system minimum fling velocity to commit a swipe
+    private final long NANOS_PER_MS = 1000000L;
 
     /*
      *                  Type 1: Pull Out
@@ -88,42 +99,44 @@ public class SwipeListItem implements View.OnTouchListener {
     private View mBottom; // R.id.bottom; shown on SWIPE_UP
     private View mLeft;   // R.id.left;   shown on SWIPE_RIGHT
     private View mRight;  // R.id.right;  shown on SWIPE_LEFT
+    // Backgrounds are only required for the accepted directions, and may be ViewStubs inflated the
+    // first time they are shown. Give such a ViewStub the same android:inflatedId as its android:id.
 
     private int mItemHeight;
     private int mItemWidth;
-    private int mSwipedThresholdH;
-    private int mSwipedThresholdV;
-
-    private float xDown, yDown, xUp, yUp, xMove, yMove;
 
     private Context mContext;
     private ListView mListView;
     private int mAcceptedDirections;
-    private int mDirection;
     private OnSwipeListener mListener;
     private int mType;
-    private GestureDetector mGestureDetector;
+    private int mOffsetMode = OFFSET_LAYOUT;
+    private int mShownDirection = SWIPE_STILL; // whose background is shown
+    private boolean mHardwareLayerEnabled = false;
+    private long mEventTime; // nanoseconds, of the event being fed to the engine
+    private long mPendingEventTime; // nanoseconds, of the oldest move waiting for a frame
+    private SwipeMetrics mMetrics;
+    private boolean mLayersOn = false;
+    private View mLayerPane; // background view on a hardware layer along with mCenter, null if none
     private InterestedGesture mGestureCb;
-
-    private final Handler mHandler = new Handler();
-    private boolean mOnCancellingOrSwiping = false;
-    private boolean mOnRestoringView = false;
-    private int mCancellingOrSwipingDistance = 0;
-    private Runnable mCancellingRunner = new Runnable() {
-        public void run() {
-            goCancelling();
-        }
-    };
-    private Runnable mSwipingRunner = new Runnable() {
-        public void run() {
-            goSwiping();
-        }
-    };
-    private Runnable mRestoringRunner = new Runnable() {
-        public void run() {
-            goRestoring();
-        }
-    };
+    private boolean mDetectTaps = false;
+    private boolean mTapCandidate = false; // the pointer went down and has not left the touch slop
+    private float mTapDownX;
+    private float mTapDownY;
+    private int mTouchSlopSquare;
+    private int mLongPressTimeout;
+    private boolean mSharedPanesEnabled = false;
+    private SharedPanes.Pane mSharedPane; // drawn for the ViewStub of mShownDirection, null if none
+    private View mSharedStub; // that ViewStub, while the real view of mSharedPane stands in for it
+    private OnSharedPaneAttachedListener mSharedPaneListener;
+
+    private final EngineCallback mEngineCallback = new EngineCallback();
+    private final SwipeEngine mEngine;
+    private GestureRecorder mRecorder;
+    private SwipeAnimator mAnimator;
+
+    private long mItemId = AdapterView.INVALID_ROW_ID; // stable id of the list item, as the key in mStates
+    private SwipeStates mStates; // where to remember the settled offset, null if not remembered
 
     public interface OnSwipeListener {
         public void onReady();
@@ -135,6 +148,16 @@ public class SwipeListItem implements View.OnTouchListener {
         public void onSwiped(int direction, int distance);
     }
 
+    public interface OnSharedPaneAttachedListener {
+        /**
+         * The real view of a shared background was put in this list item, in place of its
+         * ViewStub. It is the same view for every list item, so bind it to this one here.
+         *
+         * @param id of the list item, as bound, or AdapterView.INVALID_ROW_ID.
+         */
+        public void onSharedPaneAttached(View pane, long id);
+    }
+
     public static SwipeListItem accept(Context context, View view, ListView listView, int acceptedDirections, int type, InterestedGesture gestureCb, OnSwipeListener listener) {
         SwipeListItem swipeListItem = new SwipeListItem(context, view, listView, acceptedDirections, type, gestureCb, listener);
         view.setOnTouchListener(swipeListItem);
@@ -146,8 +169,22 @@ public class SwipeListItem implements View.OnTouchListener {
     }
 
     public SwipeListItem(Context context, View view, ListView listView, int acceptedDirections, int type, InterestedGesture gestureCb, OnSwipeListener listener) {
+        this(context, listView, acceptedDirections, type, gestureCb, listener);
+
+        if (view == null) {
+            throw new IllegalArgumentException("Null view");
+        }
+
+        bind(view, AdapterView.INVALID_ROW_ID);
+        mDetectTaps = true;
+    }
+
+    /*
+     * A SwipeListItem not tied to any list item yet, as used by SwipeCoordinator. Taps are left to
+     * the ListView itself.
+     */
+    SwipeListItem(Context context, ListView listView, int acceptedDirections, int type, InterestedGesture gestureCb, OnSwipeListener listener) {
         mContext = context;
-        mMotherView = view;
         mListView = listView;
         mAcceptedDirections = acceptedDirections;
         mType = type;
@@ -158,346 +195,691 @@ public class SwipeListItem implements View.OnTouchListener {
             throw new IllegalArgumentException("Null context");
         }
 
-        if (view == null) {
-            throw new IllegalArgumentException("Null view");
-        }
-
         if (listView == null) {
             throw new IllegalArgumentException("Null listView");
         }
 
-        mCenter = view.findViewById(R.id.center);
-        if (mCenter == null) {
+        mAnimator = SwipeAnimator.from(mListView);
+
+        mEngine = new SwipeEngine(acceptedDirections, mEngineCallback);
+        ViewConfiguration vc = ViewConfiguration.get(mContext);
+        mEngine.setFlingVelocities(vc.getScaledMinimumFlingVelocity() * FLING_VELOCITY_FACTOR, vc.getScaledMaximumFlingVelocity());
+        // The same slop, scaled by the density, as the ListView before it scrolls
+        int touchSlop = vc.getScaledTouchSlop();
+        mEngine.setSwipingThresholds(touchSlop, touchSlop);
+        mEngine.setTouchSlop(touchSlop);
+        mTouchSlopSquare = touchSlop * touchSlop;
+        mLongPressTimeout = ViewConfiguration.getLongPressTimeout();
+    }
+
+    /*
+     * Point this object to another list item. Only to be called while it is idle.
+     */
+    void bind(View view, long id) {
+        View center = view.findViewById(R.id.center);
+        if (center == null) {
             throw new IllegalArgumentException("No center child view");
         }
 
-        mTop = view.findViewById(R.id.top);
-        if (mTop == null) {
-            throw new IllegalArgumentException("No top child view");
+        View top = findPane(view, R.id.top, SWIPE_DOWN, "No top child view");
+        View bottom = findPane(view, R.id.bottom, SWIPE_UP, "No bottom child view");
+        View left = findPane(view, R.id.left, SWIPE_RIGHT, "No left child view");
+        View right = findPane(view, R.id.right, SWIPE_LEFT, "No right child view");
+
+        mMotherView = view;
+        mCenter = center;
+        mTop = top;
+        mBottom = bottom;
+        mLeft = left;
+        mRight = right;
+        mShownDirection = SWIPE_STILL;
+        mItemId = id;
+
+        setWidth(mListView.getWidth());
+    }
+
+    private View findPane(View view, int id, int direction, String error) {
+        View pane = view.findViewById(id);
+        if (pane == null && (mAcceptedDirections & direction) != 0) {
+            throw new IllegalArgumentException(error);
+        }
+        return pane;
+    }
+
+    /*
+     * Let go of the list item, typically because its view is recycled for another one. The state
+     * reached, even mid-way, is remembered in mStates and the views are put back in place.
+     */
+    void unbind() {
+        if (mEngine.isDragging() && mMetrics != null) {
+            mMetrics.endGesture(System.nanoTime(), mEngine.getDirection(), false);
+        }
+        if (mEngine.getSettleMode() == SwipeEngine.SETTLE_NONE && mEngine.getDirection() != SWIPE_STILL) {
+            // Recycled while being dragged; the gesture is over for this item.
+            saveState(mEngine.getOffset() < 0 ? SWIPE_LEFT : SWIPE_RIGHT, false);
         }
+        // A running settle animation lands, and is remembered, before the views are put back.
+        if (mRecorder != null) {
+            mRecorder.reset();
+        }
+        mEngine.reset();
+        mAnimator.stop(this);
+        endLayers();
+        clearSharedPane();
+
+        mMotherView = null;
+        mItemId = AdapterView.INVALID_ROW_ID;
+    }
 
-        mBottom = view.findViewById(R.id.bottom);
-        if (mBottom == null) {
-            throw new IllegalArgumentException("No bottom child view");
+    /*
+     * Show a remembered state right away, without animation.
+     */
+    void jumpTo(int direction, int offset) {
+        if (offset == SwipeStates.FULLY_SWIPED) {
+            offset = (direction == SWIPE_LEFT || direction == SWIPE_UP) ? -mItemWidth : mItemWidth;
         }
 
-        mLeft = view.findViewById(R.id.left);
-        if (mLeft == null) {
-            throw new IllegalArgumentException("No left child view");
+        if (mRecorder != null) {
+            mRecorder.jump(direction, offset);
         }
 
-        mRight = view.findViewById(R.id.right);
-        if (mRight == null) {
-            throw new IllegalArgumentException("No right child view");
+        mEngine.jumpTo(direction, offset);
+        if (offset != 0 && (offset == mItemWidth || offset == -mItemWidth)) {
+            revealSharedPane();
         }
+    }
 
-        setWidth(mListView.getWidth());
-        mGestureDetector = new GestureDetector(mContext, new SwipeDetector());
+    void setStates(SwipeStates states) {
+        mStates = states;
+    }
+
+    View getView() {
+        return mMotherView;
+    }
+
+    long getItemId() {
+        return mItemId;
+    }
+
+    /*
+     * Nothing moving, nothing revealed.
+     */
+    boolean isIdle() {
+        return mEngine.isIdle();
+    }
+
+    /*
+     * A direction has been decided for the current gesture, or the views are busy settling.
+     * Touch events belong to this list item rather than the ListView.
+     */
+    boolean isTouchOwner() {
+        return mEngine.isTouchOwner();
     }
 
     public void setWidth(int width) {
         mItemWidth = width;
-        mSwipedThresholdH = (int)(mItemWidth * H_SWIPED_THRESHOLD_RATIO);
+        setSize();
     }
 
     public void setHeight(int height) {
         mItemHeight = height;
-        mSwipedThresholdV = (int)(mItemHeight * V_SWIPED_THRESHOLD_RATIO);
+        setSize();
+    }
+
+    private void setSize() {
+        if (mRecorder != null) {
+            mRecorder.size(mItemWidth, mItemHeight);
+        }
+        mEngine.setSize(mItemWidth, mItemHeight);
     }
 
     public void setOnSwipeListener(OnSwipeListener listener) {
         mListener = listener;
     }
 
+    /**
+     * Choose between OFFSET_LAYOUT (the default) and OFFSET_TRANSLATION. Translations survive a
+     * relayout of the list and do not invalidate the layout on each frame. Call it before the
+     * first swipe.
+     */
+    public void setOffsetMode(int mode) {
+        mOffsetMode = mode;
+    }
+
+    /**
+     * Draw mCenter and the revealed background from hardware layers while a swipe or a settle
+     * animation is running. Only effective with OFFSET_TRANSLATION.
+     */
+    public void setHardwareLayerEnabled(boolean enabled) {
+        mHardwareLayerEnabled = enabled;
+        if (!enabled) {
+            endLayers();
+        }
+    }
+
+    /**
+     * Choose between MOVE_DISPATCH_PER_EVENT (the default) and MOVE_DISPATCH_PER_FRAME. Per frame,
+     * the views are moved and onMove() is called at most once per frame whatever the touch
+     * sampling rate, with the distance of the latest event. getVelocity() still takes every
+     * sample into account.
+     */
+    public void setMoveDispatchMode(int mode) {
+        mEngine.setMoveDispatchMode(mode);
+    }
+
+    /**
+     * Choose between ARBITRATION_THRESHOLDS (the default) and ARBITRATION_SLOP. With the latter,
+     * the ListView and its parents are kept from intercepting from touch down until the pointer
+     * leaves the touch slop; the gesture is then swiped if it moved mostly along an accepted
+     * direction, or else handed to the ListView for the rest of it. Either way it is decided once,
+     * before the ListView would start scrolling.
+     */
+    public void setArbitrationMode(int mode) {
+        mEngine.setArbitrationMode(mode);
+    }
+
+    /**
+     * Leave the backgrounds that are ViewStubs uninflated, and draw them from the SharedPanes of
+     * the ListView instead; the real view only comes in while the list item is fully swiped. Only
+     * effective in a SwipeItemLayout. Call it before the first swipe.
+     */
+    public void setSharedPanesEnabled(boolean enabled) {
+        mSharedPanesEnabled = enabled;
+    }
+
+    /**
+     * Be told when the real view of a shared background comes into this list item, to bind it.
+     */
+    public void setOnSharedPaneAttachedListener(OnSharedPaneAttachedListener listener) {
+        mSharedPaneListener = listener;
+    }
+
+    /**
+     * Record the performance of every gesture in the given metrics, or stop with null.
+     */
+    public void setMetrics(SwipeMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Record every input and event of this item into the given recorder, or stop with null. The
+     * trace can be replayed on a plain JVM with GestureReplay.
+     */
+    public void setRecorder(GestureRecorder recorder) {
+        if (mRecorder != null) {
+            mRecorder.stop();
+        }
+        mRecorder = recorder;
+        if (mRecorder != null) {
+            mRecorder.start(mEngine, mEngineCallback);
+        }
+    }
+
+    /**
+     * @return the velocity of the current gesture along the swiping direction, in pixels per
+     * second, or 0 if there is no gesture.
+     */
+    public float getVelocity() {
+        return mEngine.getVelocity();
+    }
+
+    /**
+     * @return the current offset of the foreground view, in pixels. Negative when swiped left.
+     */
+    public int getOffset() {
+        return mEngine.getOffset();
+    }
+
+    /**
+     * Set the interpolator used by the cancelling, swiping and restoring animations.
+     * Pass null to get the default deceleration back.
+     */
+    public void setInterpolator(final TimeInterpolator interpolator) {
+        if (interpolator == null) {
+            mEngine.setInterpolator(null);
+        } else {
+            mEngine.setInterpolator(new SwipeEngine.Interpolator() {
+                public float getInterpolation(float input) {
+                    return interpolator.getInterpolation(input);
+                }
+            });
+        }
+    }
+
     public boolean onTouch(View v, MotionEvent event) {
-        boolean handled = true;
-        int xDistance;
-        int yDistance;
-        int distance = 0;
+        int action = event.getAction();
 
-        if (mOnCancellingOrSwiping || mOnRestoringView) {
+        if (mEngine.isSettling()) {
             // During cancelling, swiping or restoring, do nothing to touch events.
-            return handled;
+            return true;
         }
 
-        // A convenience object to listen for a subset of all the gestures.
-        mGestureDetector.onTouchEvent(event);
+        if (mDetectTaps && isTap(action, event)) {
+            onSingleTapUp();
+        }
+
+        if (action == MotionEvent.ACTION_MOVE) {
+            // Historical samples batched into the event are taken into account by the velocity.
+            for (int i = 0; i < event.getHistorySize(); i++) {
+                long time = event.getHistoricalEventTime(i) * NANOS_PER_MS;
+                if (mRecorder != null) {
+                    mRecorder.sample(event.getHistoricalX(i), event.getHistoricalY(i), time);
+                }
+                mEngine.addSample(event.getHistoricalX(i), event.getHistoricalY(i), time);
+            }
+        }
+
+        boolean wasDragging = mEngine.isDragging();
+        boolean wasPending = mEngine.isMovePending();
+        boolean wasYielded = mEngine.isYielded();
+        mEventTime = event.getEventTime() * NANOS_PER_MS;
+        if (mRecorder != null) {
+            mRecorder.touch(action, event.getX(), event.getY(), mEventTime);
+        }
+        boolean handled = mEngine.onTouch(action, event.getX(), event.getY(), mEventTime);
 
-        switch (event.getAction()) {
+        switch (action) {
             case MotionEvent.ACTION_DOWN:
-                xDown = event.getX();
-                yDown = event.getY();
-                mDirection = SWIPE_STILL;
-                mListener.onReady();
                 // To let mCenter have the chance selecting background colour via selector. Ex. android:background="@drawable/notification_selector"
                 mCenter.setPressed(true);
+                if (mEngine.getArbitrationMode() == ARBITRATION_SLOP) {
+                    // Nobody takes the gesture before the slop is left.
+                    mListView.requestDisallowInterceptTouchEvent(true);
+                }
                 break;
             case MotionEvent.ACTION_MOVE:
-                xMove = event.getX();
-                yMove = event.getY();
-                xDistance = (int)(xMove - xDown);
-                yDistance = (int)(yMove - yDown);
-                if (mDirection == SWIPE_STILL) {
-                    // Decide the direction
-                    if ((Math.abs(xDistance) > H_SWIPING_THRESHOLD) && (xDistance > 0) && ((mAcceptedDirections & SWIPE_RIGHT) != 0)) {
-                        distance = xDistance;
-                        mDirection = SWIPE_RIGHT;
-                    } else if ((Math.abs(xDistance) > H_SWIPING_THRESHOLD) && (xDistance < 0) && ((mAcceptedDirections & SWIPE_LEFT) != 0)) {
-                        distance = xDistance;
-                        mDirection = SWIPE_LEFT;
-                    } else if ((Math.abs(yDistance) > V_SWIPING_THRESHOLD) && (yDistance > 0) && ((mAcceptedDirections & SWIPE_DOWN) != 0)) {
-                        distance = yDistance;
-                        mDirection = SWIPE_DOWN;
-                    } else if ((Math.abs(yDistance) > V_SWIPING_THRESHOLD) && (yDistance < 0) && ((mAcceptedDirections & SWIPE_UP) != 0)) {
-                        distance = yDistance;
-                        mDirection = SWIPE_UP;
-                    }
-
-                    if (mDirection != SWIPE_STILL) {
-                        setSwipeView(mDirection);
-
-                        mListView.requestDisallowInterceptTouchEvent(true);
-                        swipe(mDirection, distance);
-                        mListener.onStart(mDirection, distance);
-
-                        mCenter.setPressed(false);
-                    }
-                } else {
-                    if (mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT) {
-                        distance = xDistance;
-                    } else {
-                        distance = yDistance;
-                    }
-
-                    swipe(mDirection, distance);
-                    mListener.onMove(mDirection, distance);
+                if (!wasPending && mEngine.isMovePending()) {
+                    mPendingEventTime = mEventTime;
+                }
+                if (!wasYielded && mEngine.isYielded()) {
+                    // A scroll; the ListView intercepts the next move.
+                    mListView.requestDisallowInterceptTouchEvent(false);
+                    mCenter.setPressed(false);
                 }
                 break;
             case MotionEvent.ACTION_UP:
-                xUp = event.getX();
-                yUp = event.getY();
-                xDistance = (int)(xUp - xDown);
-                yDistance = (int)(yUp - yDown);
-                if (mDirection != SWIPE_STILL) {
-                    boolean goSwiping = false;
-                    if ((Math.abs(xDistance) > mSwipedThresholdH) && (mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT)) {
-                        goSwiping = true;
-                    } else if ((Math.abs(yDistance) > mSwipedThresholdV) && (mDirection == SWIPE_DOWN || mDirection == SWIPE_UP)) {
-                        goSwiping = true;
-                    }
-
-                    if (mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT) {
-                        distance = xDistance;
-                    } else {
-                        distance = yDistance;
-                    }
-
-                    mOnCancellingOrSwiping = true;
-                    mCancellingOrSwipingDistance = distance;
-                    if (goSwiping) {
-                        goSwiping();
-                    } else {
-                        goCancelling();
-                    }
-                }
                 mCenter.setPressed(false);
                 break;
             case MotionEvent.ACTION_CANCEL:
-                // The current gesture has been aborted. You will not receive any more points in it. You should treat this as an 
-                // up event, but not perform any action that you normally would.
-                Log.v(TAG, "onTouch MotionEvent.ACTION_CANCEL");
+                if (DEBUG) {
+                    Log.v(TAG, "onTouch MotionEvent.ACTION_CANCEL");
+                }
+                if (wasDragging && mMetrics != null) {
+                    mMetrics.endGesture(System.nanoTime(), mEngine.getDirection(), false);
+                }
                 mCenter.setPressed(false);
+                endLayers();
                 break;
             default:
-                Log.v(TAG, "onTouch MotionEvent.ACTION_? = " + event.getAction());
-                handled = false;
+                if (DEBUG) {
+                    Log.v(TAG, "onTouch MotionEvent.ACTION_? = " + action);
+                }
                 break;
         }
 
+        if (mEngine.needsFrame()) {
+            mAnimator.start(this);
+        }
         return handled;
     }
 
     private void setSwipeView(int direction) {
-        mTop.setVisibility(View.INVISIBLE);
-        mBottom.setVisibility(View.INVISIBLE);
-        mLeft.setVisibility(View.INVISIBLE);
-        mRight.setVisibility(View.INVISIBLE);
+        clearSharedPane();
+        hidePane(mTop);
+        hidePane(mBottom);
+        hidePane(mLeft);
+        hidePane(mRight);
 
         if (direction == SWIPE_DOWN) {
-            mTop.setVisibility(View.VISIBLE);
+            mTop = showPane(mTop);
         } else if (direction == SWIPE_UP) {
-            mBottom.setVisibility(View.VISIBLE);
+            mBottom = showPane(mBottom);
         } else if (direction == SWIPE_RIGHT) {
-            mLeft.setVisibility(View.VISIBLE);
+            mLeft = showPane(mLeft);
         } else if (direction == SWIPE_LEFT) {
-            mRight.setVisibility(View.VISIBLE);
+            mRight = showPane(mRight);
         }
+        mShownDirection = direction;
     }
 
-    private void onCancelledOrSwiped() {
-        mOnCancellingOrSwiping = false;
-        mDirection = SWIPE_STILL;
-        mListView.requestDisallowInterceptTouchEvent(false);
+    private void hidePane(View pane) {
+        // Changing the visibility of a ViewStub would inflate it.
+        if (pane != null && !(pane instanceof ViewStub)) {
+            pane.setVisibility(View.INVISIBLE);
+        }
     }
 
-    private void onRestored() {
-        mOnRestoringView = false;
+    private View showPane(View pane) {
+        if (pane instanceof ViewStub) {
+            ViewStub stub = (ViewStub) pane;
+            if (mSharedPanesEnabled && mMotherView instanceof SwipeItemLayout && stub.getLayoutResource() != 0) {
+                // Left as it is; offsetPane() moves the shared one instead.
+                mSharedPane = SharedPanes.from(mListView).get(stub.getLayoutResource());
+                ((SwipeItemLayout) mMotherView).setSharedPane(mSharedPane, 0, 0);
+                return pane;
+            }
+            return stub.inflate();
+        }
+        if (pane != null) {
+            pane.setVisibility(View.VISIBLE);
+        }
+        return pane;
     }
 
-    private void goCancelling() {
-        if (mDirection == SWIPE_LEFT) {
-            if (mCancellingOrSwipingDistance < 0) {
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onGoCancelling(mDirection, mCancellingOrSwipingDistance);
-                mCancellingOrSwipingDistance += SMOOTH_SWIPING_STEP;
+    /*
+     * Called by the SwipeAnimator once per frame while this item asked for frames.
+     */
+    void doFrame(long frameTimeNanos) {
+        if (mMetrics != null) {
+            mMetrics.onFrame(frameTimeNanos);
+        }
 
-                mHandler.postDelayed(mCancellingRunner, SMOOTH_SWIPING_DELAY);
-            } else {
-                mCancellingOrSwipingDistance = 0;
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onCancelled(mDirection, mCancellingOrSwipingDistance);
+        if (mRecorder != null) {
+            mRecorder.frame(frameTimeNanos);
+        }
+        boolean more = mEngine.doFrame(frameTimeNanos);
+        if (mMetrics != null) {
+            // Moves applied up to now, even between frames, are drawn by this one.
+            mMetrics.onMovesDrawn(frameTimeNanos);
+        }
 
-                onCancelledOrSwiped();
-            }
-        } else if (mDirection == SWIPE_RIGHT) {
-            if (mCancellingOrSwipingDistance > 0) {
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onGoCancelling(mDirection, mCancellingOrSwipingDistance);
-                mCancellingOrSwipingDistance -= SMOOTH_SWIPING_STEP;
-
-                mHandler.postDelayed(mCancellingRunner, SMOOTH_SWIPING_DELAY);
-            } else {
-                mCancellingOrSwipingDistance = 0;
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onCancelled(mDirection, mCancellingOrSwipingDistance);
-
-                onCancelledOrSwiped();
-            }
-        } else {
-            // SWIPE_UP and SWIPE_DOWN are not supported yet.
+        if (!more && (mMetrics == null || !mEngine.isDragging())) {
+            mAnimator.stop(this);
         }
     }
 
-    private void goSwiping() {
-        if (mDirection == SWIPE_LEFT) {
-            if (mCancellingOrSwipingDistance > -mItemWidth) {
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onGoSwiping(mDirection, mCancellingOrSwipingDistance);
-                mCancellingOrSwipingDistance -= SMOOTH_SWIPING_STEP;
-
-                mHandler.postDelayed(mSwipingRunner, SMOOTH_SWIPING_DELAY);
-            } else {
-                mCancellingOrSwipingDistance = -mItemWidth;
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onSwiped(mDirection, mCancellingOrSwipingDistance);
+    private void saveState(int direction, boolean fullySwiped) {
+        if (mStates == null || mItemId == AdapterView.INVALID_ROW_ID) {
+            return;
+        }
 
-                onCancelledOrSwiped();
-            }
-        } else if (mDirection == SWIPE_RIGHT) {
-            if (mCancellingOrSwipingDistance < mItemWidth) {
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onGoSwiping(mDirection, mCancellingOrSwipingDistance);
-                mCancellingOrSwipingDistance += SMOOTH_SWIPING_STEP;
-
-                mHandler.postDelayed(mSwipingRunner, SMOOTH_SWIPING_DELAY);
-            } else {
-                mCancellingOrSwipingDistance = mItemWidth;
-                swipe(mDirection, mCancellingOrSwipingDistance);
-                mListener.onSwiped(mDirection, mCancellingOrSwipingDistance);
-
-                onCancelledOrSwiped();
-            }
+        if (fullySwiped) {
+            mStates.put(mItemId, direction, SwipeStates.FULLY_SWIPED);
+        } else if (mEngine.getOffset() != 0) {
+            mStates.put(mItemId, direction, mEngine.getOffset());
         } else {
-           // SWIPE_UP and SWIPE_DOWN are not supported yet.
+            mStates.remove(mItemId);
         }
     }
 
-    private void swipe(int direction, int distance) {
+    private void offsetViews(int direction, int distance) {
+        if (direction != mShownDirection) {
+            setSwipeView(direction);
+        }
+
         if (direction == SWIPE_LEFT) {
-            if (distance > 0) {
-                distance = 0;
-            }
-            mCenter.offsetLeftAndRight(distance - mCenter.getLeft());
-            if (mType == TYPE_PULL_OUT) {
-                mRight.offsetLeftAndRight(distance - mRight.getLeft() + mItemWidth);
+            offsetPane(mCenter, distance);
+            if (mType == TYPE_PULL_OUT && mRight != null) {
+                offsetPane(mRight, distance + mItemWidth);
             }
         } else if (direction == SWIPE_RIGHT) {
-            if (distance < 0) {
-                distance = 0;
+            offsetPane(mCenter, distance);
+            if (mType == TYPE_PULL_OUT && mLeft != null) {
+                offsetPane(mLeft, distance - mItemWidth);
             }
-            mCenter.offsetLeftAndRight(distance - mCenter.getLeft());
-            if (mType == TYPE_PULL_OUT) {
-                mLeft.offsetLeftAndRight(distance - mLeft.getLeft() - mItemWidth);
+        }
+
+        if (mMotherView instanceof SwipeItemLayout) {
+            ((SwipeItemLayout) mMotherView).onPanesMoved();
+        }
+    }
+
+    private void offsetPane(View pane, int x) {
+        if (pane instanceof ViewStub) {
+            if (mSharedPane != null) {
+                ((SwipeItemLayout) mMotherView).setSharedPane(mSharedPane, x, 0);
             }
+            return;
+        }
+        if (mOffsetMode == OFFSET_TRANSLATION) {
+            pane.setTranslationX(x);
         } else {
-            // SWIPE_UP and SWIPE_DOWN are not supported yet.
+            pane.offsetLeftAndRight(x - pane.getLeft());
         }
     }
 
-    private void goRestoring() {
-        int centerX = mCenter.getLeft();
-        int offset = (Math.abs(centerX) <= RESTORING_VIEW_STEP) ? Math.abs(centerX) : RESTORING_VIEW_STEP;
+    private void beginLayers(int direction) {
+        if (!mHardwareLayerEnabled || mOffsetMode != OFFSET_TRANSLATION || mLayersOn) {
+            return;
+        }
 
-        if (centerX > 0) {
-            mCenter.offsetLeftAndRight(-offset);
-            if (mType == TYPE_PULL_OUT) {
-                mLeft.offsetLeftAndRight(-offset);
-            }
+        if (direction == SWIPE_LEFT) {
+            mLayerPane = mRight;
+        } else if (direction == SWIPE_RIGHT) {
+            mLayerPane = mLeft;
+        } else {
+            return;
+        }
+        if (mType != TYPE_PULL_OUT || mLayerPane instanceof ViewStub) {
+            mLayerPane = null;
+        }
 
-            mHandler.postDelayed(mRestoringRunner, RESTORING_VIEW_DELAY);
-        } else if (centerX < 0) {
-            mCenter.offsetLeftAndRight(offset);
-            if (mType == TYPE_PULL_OUT) {
-                mRight.offsetLeftAndRight(offset);
-            }
+        mLayersOn = true;
+        mCenter.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        if (mLayerPane != null) {
+            mLayerPane.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    private void endLayers() {
+        if (!mLayersOn) {
+            return;
+        }
+
+        mLayersOn = false;
+        mCenter.setLayerType(View.LAYER_TYPE_NONE, null);
+        if (mLayerPane != null) {
+            mLayerPane.setLayerType(View.LAYER_TYPE_NONE, null);
+            mLayerPane = null;
+        }
+    }
+
+    /*
+     * Put the real view of the shared background in place of its ViewStub, once fully swiped.
+     */
+    private void revealSharedPane() {
+        if (mSharedPane == null || mSharedStub != null
+                || (mShownDirection != SWIPE_LEFT && mShownDirection != SWIPE_RIGHT)) {
+            return;
+        }
 
-            mHandler.postDelayed(mRestoringRunner, RESTORING_VIEW_DELAY);
+        View stub = (mShownDirection == SWIPE_LEFT) ? mRight : mLeft;
+        View pane = mSharedPane.attach(this, (ViewGroup) mMotherView, stub.getLayoutParams());
+        mSharedStub = stub;
+        setSharedStubPane(pane);
+        ((SwipeItemLayout) mMotherView).setSharedPane(null, 0, 0);
+        offsetViews(mShownDirection, mEngine.getOffset());
+        if (mSharedPaneListener != null) {
+            mSharedPaneListener.onSharedPaneAttached(pane, mItemId);
+        }
+    }
+
+    /*
+     * Put the ViewStub back and draw the shared background again.
+     */
+    private void concealSharedPane() {
+        if (mSharedStub == null) {
+            return;
+        }
+
+        mSharedPane.detach(this);
+        putBackSharedStub();
+    }
+
+    private void clearSharedPane() {
+        concealSharedPane();
+        if (mSharedPane != null) {
+            ((SwipeItemLayout) mMotherView).setSharedPane(null, 0, 0);
+            mSharedPane = null;
+        }
+    }
+
+    private void setSharedStubPane(View pane) {
+        if (mShownDirection == SWIPE_LEFT) {
+            mRight = pane;
         } else {
-            onRestored();
+            mLeft = pane;
         }
     }
 
-    public void restoreView() {
-        mOnRestoringView = true;
+    /*
+     * The real view of mSharedPane was taken by another list item.
+     */
+    void onSharedPaneTaken() {
+        if (mSharedStub != null) {
+            putBackSharedStub();
+        }
+    }
 
-        goRestoring();
+    private void putBackSharedStub() {
+        setSharedStubPane(mSharedStub);
+        mSharedStub = null;
+        ((SwipeItemLayout) mMotherView).setSharedPane(mSharedPane, 0, 0);
+        offsetViews(mShownDirection, mEngine.getOffset());
     }
 
-    private boolean performListViewItemClick(MotionEvent e) {
-        if (mListView instanceof AdapterView) {
-            AdapterView view = (AdapterView) mListView;
-            int pos = view.getPositionForView(mMotherView);
-            if (pos != AdapterView.INVALID_POSITION) {
-                return view.performItemClick(view.getChildAt(pos - view.getFirstVisiblePosition()), pos, view.getAdapter().getItemId(pos));
-            }
+    public void restoreView() {
+        long now = System.nanoTime();
+        if (mRecorder != null) {
+            mRecorder.restore(now);
+        }
+        mEngine.restore(now);
+        if (mEngine.needsFrame()) {
+            mAnimator.start(this);
         }
-        return false;
     }
 
-    class SwipeDetector extends GestureDetector.SimpleOnGestureListener {
-        @Override
-        public boolean onDown(MotionEvent e) {
-            return true;
+    /*
+     * Where the engine's decisions meet the views, the listener and the metrics.
+     */
+    private class EngineCallback implements SwipeEngine.Callback {
+        public void onReady() {
+            mListener.onReady();
         }
 
-        @Override
-        public boolean onSingleTapUp(MotionEvent e) {
-            if (mGestureCb != null) {
-                mGestureCb.onSingleTapUp();
-                return true;
-            } else {
-                return performListViewItemClick(e);
+        public void onStart(int direction, int distance) {
+            beginLayers(direction);
+            mListView.requestDisallowInterceptTouchEvent(true);
+            if (mMetrics != null) {
+                mMetrics.beginGesture();
+                mMetrics.onMoveApplied(mEventTime);
+                // Keep frames coming to watch for the ones over budget, and drawing the moves.
+                mAnimator.start(SwipeListItem.this);
             }
+            mListener.onStart(direction, distance);
+
+            mCenter.setPressed(false);
         }
 
-        @Override
-        public boolean onSingleTapConfirmed(MotionEvent e) {
-            // Unlike onSingleTapUp(MotionEvent), this will only be called after the detector is confident that the user's first tap is not followed by a second
-            // tap leading to a double-tap gesture.
-            return true;
+        public void onMove(int direction, int distance) {
+            if (mMetrics != null) {
+                if (mEngine.getMoveDispatchMode() == MOVE_DISPATCH_PER_FRAME) {
+                    mMetrics.onMoveApplied(mPendingEventTime);
+                } else {
+                    mMetrics.onMoveApplied(mEventTime);
+                }
+            }
+            mListener.onMove(direction, distance);
+        }
+
+        public void onSettleStart(int settle, int direction, long timeNanos) {
+            if (mMetrics != null && settle != SwipeEngine.SETTLE_RESTORING) {
+                mMetrics.beginSettle(timeNanos);
+            }
+            beginLayers(direction);
+        }
+
+        public void onGoCancelling(int direction, int distance) {
+            mListener.onGoCancelling(direction, distance);
+        }
+
+        public void onCancelled(int direction, int distance) {
+            onSettled(direction, false);
+            mListener.onCancelled(direction, distance);
+        }
+
+        public void onGoSwiping(int direction, int distance) {
+            mListener.onGoSwiping(direction, distance);
+        }
+
+        public void onSwiped(int direction, int distance) {
+            onSettled(direction, true);
+            revealSharedPane();
+            mListener.onSwiped(direction, distance);
+        }
+
+        public void onRestored() {
+            endLayers();
+            concealSharedPane();
+            saveState(SWIPE_STILL, false);
+        }
+
+        public void onOffset(int direction, int offset) {
+            offsetViews(direction, offset);
+        }
+
+        private void onSettled(int direction, boolean swiped) {
+            endLayers();
+            saveState(direction, swiped);
+            if (mMetrics != null) {
+                mMetrics.endGesture(System.nanoTime(), direction, swiped);
+            }
+            mListView.requestDisallowInterceptTouchEvent(false);
         }
     }
 
+    /*
+     * A tap, as GestureDetector.onSingleTapUp() sees it: the pointer is lifted without having
+     * left the touch slop, before the long press timeout, and no swiping direction was decided.
+     * Only a few fields, so every move costs a subtraction rather than a detector pass.
+     */
+    private boolean isTap(int action, MotionEvent event) {
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mTapCandidate = true;
+                mTapDownX = event.getX();
+                mTapDownY = event.getY();
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                if (mTapCandidate) {
+                    float dx = event.getX() - mTapDownX;
+                    float dy = event.getY() - mTapDownY;
+                    if (dx * dx + dy * dy > mTouchSlopSquare) {
+                        mTapCandidate = false;
+                    }
+                }
+                return false;
+            case MotionEvent.ACTION_UP:
+                boolean tap = mTapCandidate && mEngine.getDirection() == SWIPE_STILL
+                        && event.getEventTime() - event.getDownTime() < mLongPressTimeout;
+                mTapCandidate = false;
+                return tap;
+            default:
+                // Cancelled, or another pointer came down.
+                mTapCandidate = false;
+                return false;
+        }
+    }
+
+    private void onSingleTapUp() {
+        if (mGestureCb != null) {
+            mGestureCb.onSingleTapUp();
+        } else {
+            performListViewItemClick();
+        }
+    }
+
+    private boolean performListViewItemClick() {
+        if (mListView instanceof AdapterView) {
+            AdapterView view = (AdapterView) mListView;
+            int pos = view.getPositionForView(mMotherView);
+            if (pos != AdapterView.INVALID_POSITION) {
+                return view.performItemClick(view.getChildAt(pos - view.getFirstVisiblePosition()), pos, view.getAdapter().getItemId(pos));
+            }
+        }
+        return false;
+    }
+
     public interface InterestedGesture {
         public void onSingleTapUp();
 
@@ -0,0 +1,293 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.Context;
+import android.view.WindowManager;
+
+/**
+ * Opt-in performance metrics of swipes, set with SwipeListItem.setMetrics() or
+ * SwipeCoordinator.setMetrics(). Per gesture, it records:
+ *
+ *  - the latency from each move event to the frame drawing the views where it moved them,
+ *  - the duration of the settle animation,
+ *  - the frames over budget while dragging and while settling.
+ *
+ * Everything is kept in arrays allocated up front (histograms and a ring buffer of the latest
+ * gestures), so recording never allocates. Only snapshot() does. All methods are meant to be
+ * called on the main thread.
+ *
+ * Event times are MotionEvent.getEventTime(), in the SystemClock.uptimeMillis() base, which is
+ * the same monotonic clock as System.nanoTime() and the Choreographer frame times.
+ */
+public class SwipeMetrics {
+    private static final String TAG = "SwipeMetrics";
+
+    private static final long NANOS_PER_MS = 1000000L;
+    private static final int GESTURE_RING_SIZE = 64;
+    private static final int MAX_UNDRAWN_MOVES = 32; // per frame; more are left out
+
+    public interface OnGestureRecordedListener {
+        /**
+         * Called at the end of every gesture, with its own figures. Durations are in nanoseconds.
+         */
+        public void onGestureRecorded(int direction, boolean swiped, long maxMoveLatency, long settleDuration,
+                                      int dragFramesOverBudget, int settleFramesOverBudget);
+    }
+
+    /**
+     * Percentiles and counts exported by snapshot(). Durations are in milliseconds.
+     */
+    public static class Snapshot {
+        public long gestures;
+        public long moves;
+        public float moveLatencyP50;
+        public float moveLatencyP90;
+        public float moveLatencyP99;
+        public float settleDurationP50;
+        public float settleDurationP90;
+        public float settleDurationP99;
+        public long dragFrames;
+        public long dragFramesOverBudget;
+        public long settleFrames;
+        public long settleFramesOverBudget;
+        // The latest gestures, oldest first
+        public long[] recentSettleDurations;
+        public int[] recentDragFramesOverBudget;
+        public int[] recentSettleFramesOverBudget;
+    }
+
+    /*
+     * Linear buckets of a fixed width, the last one taking everything beyond.
+     */
+    static class Histogram {
+        private final long mBucketWidth;
+        private final long[] mCounts;
+        private long mTotal;
+
+        Histogram(long bucketWidth, int bucketCount) {
+            mBucketWidth = bucketWidth;
+            mCounts = new long[bucketCount];
+        }
+
+        void record(long value) {
+            int bucket = (value <= 0) ? 0 : (int) Math.min(value / mBucketWidth, mCounts.length - 1);
+            mCounts[bucket]++;
+            mTotal++;
+        }
+
+        long total() {
+            return mTotal;
+        }
+
+        /*
+         * Upper bound of the bucket holding the given percentile, 0 if nothing recorded.
+         */
+        long percentile(float percent) {
+            if (mTotal == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(mTotal * percent / 100.0f);
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) {
+                    return (i + 1) * mBucketWidth;
+                }
+            }
+            return mCounts.length * mBucketWidth;
+        }
+
+        void reset() {
+            for (int i = 0; i < mCounts.length; i++) {
+                mCounts[i] = 0;
+            }
+            mTotal = 0;
+        }
+    }
+
+    private final long mFrameBudget;
+    // 0.5 ms buckets up to 64 ms, 4 ms buckets up to 1 s
+    private final Histogram mMoveLatency = new Histogram(NANOS_PER_MS / 2, 128);
+    private final Histogram mSettleDuration = new Histogram(4 * NANOS_PER_MS, 256);
+    private long mGestures;
+    private long mDragFrames;
+    private long mDragFramesOverBudget;
+    private long mSettleFrames;
+    private long mSettleFramesOverBudget;
+
+    private final long[] mRingSettleDuration = new long[GESTURE_RING_SIZE];
+    private final int[] mRingDragOverBudget = new int[GESTURE_RING_SIZE];
+    private final int[] mRingSettleOverBudget = new int[GESTURE_RING_SIZE];
+    private int mRingNext;
+    private int mRingCount;
+
+    // The gesture being recorded
+    private boolean mInGesture;
+    private long mMaxMoveLatency;
+    private long mSettleStart;
+    private long mLastFrameTime;
+    private int mDragOverBudget;
+    private int mSettleOverBudget;
+    private final long[] mUndrawnMoves = new long[MAX_UNDRAWN_MOVES]; // event times of the moves applied since the last frame
+    private int mUndrawnMoveCount;
+
+    private OnGestureRecordedListener mListener;
+
+    public SwipeMetrics(Context context) {
+        this(((WindowManager) context.getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay().getRefreshRate());
+    }
+
+    public SwipeMetrics(float refreshRate) {
+        mFrameBudget = (long) (1000 * NANOS_PER_MS / ((refreshRate > 0) ? refreshRate : 60.0f));
+    }
+
+    public void setOnGestureRecordedListener(OnGestureRecordedListener listener) {
+        mListener = listener;
+    }
+
+    void beginGesture() {
+        mInGesture = true;
+        mMaxMoveLatency = 0;
+        mSettleStart = 0;
+        mLastFrameTime = 0;
+        mDragOverBudget = 0;
+        mSettleOverBudget = 0;
+        mUndrawnMoveCount = 0;
+    }
+
+    /*
+     * The views were moved for the move event of this time. Its latency is recorded once the frame
+     * drawing them comes, in onMovesDrawn().
+     */
+    void onMoveApplied(long eventTimeNanos) {
+        if (mInGesture && mUndrawnMoveCount < MAX_UNDRAWN_MOVES) {
+            mUndrawnMoves[mUndrawnMoveCount++] = eventTimeNanos;
+        }
+    }
+
+    /*
+     * The frame of this time draws the views as moved so far, at the end of its animation pass.
+     */
+    void onMovesDrawn(long frameTimeNanos) {
+        if (!mInGesture) {
+            return;
+        }
+
+        for (int i = 0; i < mUndrawnMoveCount; i++) {
+            long latency = frameTimeNanos - mUndrawnMoves[i];
+            mMoveLatency.record(latency);
+            if (latency > mMaxMoveLatency) {
+                mMaxMoveLatency = latency;
+            }
+        }
+        mUndrawnMoveCount = 0;
+    }
+
+    void onFrame(long frameTimeNanos) {
+        if (!mInGesture) {
+            return;
+        }
+
+        boolean settling = (mSettleStart != 0);
+        if (mLastFrameTime != 0) {
+            // Half a frame of slack for the vsync jitter.
+            boolean overBudget = (frameTimeNanos - mLastFrameTime) > mFrameBudget + mFrameBudget / 2;
+            if (settling) {
+                mSettleFrames++;
+                if (overBudget) {
+                    mSettleFramesOverBudget++;
+                    mSettleOverBudget++;
+                }
+            } else {
+                mDragFrames++;
+                if (overBudget) {
+                    mDragFramesOverBudget++;
+                    mDragOverBudget++;
+                }
+            }
+        }
+        mLastFrameTime = frameTimeNanos;
+    }
+
+    void beginSettle(long timeNanos) {
+        if (mInGesture) {
+            mSettleStart = timeNanos;
+            mLastFrameTime = 0;
+        }
+    }
+
+    void endGesture(long timeNanos, int direction, boolean swiped) {
+        if (!mInGesture) {
+            return;
+        }
+
+        mInGesture = false;
+        mGestures++;
+        long settleDuration = (mSettleStart != 0) ? timeNanos - mSettleStart : 0;
+        if (mSettleStart != 0) {
+            mSettleDuration.record(settleDuration);
+        }
+
+        mRingSettleDuration[mRingNext] = settleDuration;
+        mRingDragOverBudget[mRingNext] = mDragOverBudget;
+        mRingSettleOverBudget[mRingNext] = mSettleOverBudget;
+        mRingNext = (mRingNext + 1) % GESTURE_RING_SIZE;
+        if (mRingCount < GESTURE_RING_SIZE) {
+            mRingCount++;
+        }
+
+        if (mListener != null) {
+            mListener.onGestureRecorded(direction, swiped, mMaxMoveLatency, settleDuration, mDragOverBudget, mSettleOverBudget);
+        }
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+
+        snapshot.gestures = mGestures;
+        snapshot.moves = mMoveLatency.total();
+        snapshot.moveLatencyP50 = toMillis(mMoveLatency.percentile(50));
+        snapshot.moveLatencyP90 = toMillis(mMoveLatency.percentile(90));
+        snapshot.moveLatencyP99 = toMillis(mMoveLatency.percentile(99));
+        snapshot.settleDurationP50 = toMillis(mSettleDuration.percentile(50));
+        snapshot.settleDurationP90 = toMillis(mSettleDuration.percentile(90));
+        snapshot.settleDurationP99 = toMillis(mSettleDuration.percentile(99));
+        snapshot.dragFrames = mDragFrames;
+        snapshot.dragFramesOverBudget = mDragFramesOverBudget;
+        snapshot.settleFrames = mSettleFrames;
+        snapshot.settleFramesOverBudget = mSettleFramesOverBudget;
+
+        snapshot.recentSettleDurations = new long[mRingCount];
+        snapshot.recentDragFramesOverBudget = new int[mRingCount];
+        snapshot.recentSettleFramesOverBudget = new int[mRingCount];
+        int first = (mRingNext - mRingCount + GESTURE_RING_SIZE) % GESTURE_RING_SIZE;
+        for (int i = 0; i < mRingCount; i++) {
+            int index = (first + i) % GESTURE_RING_SIZE;
+            snapshot.recentSettleDurations[i] = mRingSettleDuration[index];
+            snapshot.recentDragFramesOverBudget[i] = mRingDragOverBudget[index];
+            snapshot.recentSettleFramesOverBudget[i] = mRingSettleOverBudget[index];
+        }
+
+        return snapshot;
+    }
+
+    public void reset() {
+        mMoveLatency.reset();
+        mSettleDuration.reset();
+        mGestures = 0;
+        mDragFrames = 0;
+        mDragFramesOverBudget = 0;
+        mSettleFrames = 0;
+        mSettleFramesOverBudget = 0;
+        mRingNext = 0;
+        mRingCount = 0;
+    }
+
+    private static float toMillis(long nanos) {
+        return (float) nanos / NANOS_PER_MS;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Swipe states of list items, keyed by their stable item id rather than by the recycled views
+ * showing them. Like LongSparseArray, but the values are kept in primitive arrays: a direction
+ * and an offset per item, no boxing.
+ *
+ * It is Parcelable so the states survive a configuration change.
+ */
+public class SwipeStates implements Parcelable {
+    // Offset of an item swiped all the way, whatever the width of the list is when it is shown again.
+    public static final int FULLY_SWIPED = Integer.MAX_VALUE;
+
+    private long[] mKeys;
+    private int[] mDirections;
+    private int[] mOffsets;
+    private int mSize;
+
+    public SwipeStates() {
+        this(4);
+    }
+
+    public SwipeStates(int initialCapacity) {
+        mKeys = new long[initialCapacity];
+        mDirections = new int[initialCapacity];
+        mOffsets = new int[initialCapacity];
+        mSize = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the index of the key, or a negative number if not found.
+     */
+    public int indexOfKey(long id) {
+        int lo = 0;
+        int hi = mSize - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midVal = mKeys[mid];
+
+            if (midVal < id) {
+                lo = mid + 1;
+            } else if (midVal > id) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return ~lo;
+    }
+
+    public long keyAt(int index) {
+        return mKeys[index];
+    }
+
+    public int directionAt(int index) {
+        return mDirections[index];
+    }
+
+    public int offsetAt(int index) {
+        return mOffsets[index];
+    }
+
+    public void put(long id, int direction, int offset) {
+        int i = indexOfKey(id);
+
+        if (i >= 0) {
+            mDirections[i] = direction;
+            mOffsets[i] = offset;
+            return;
+        }
+
+        i = ~i;
+        if (mSize == mKeys.length) {
+            int capacity = mSize * 2 + 1;
+            long[] keys = new long[capacity];
+            int[] directions = new int[capacity];
+            int[] offsets = new int[capacity];
+            System.arraycopy(mKeys, 0, keys, 0, mSize);
+            System.arraycopy(mDirections, 0, directions, 0, mSize);
+            System.arraycopy(mOffsets, 0, offsets, 0, mSize);
+            mKeys = keys;
+            mDirections = directions;
+            mOffsets = offsets;
+        }
+        System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+        System.arraycopy(mDirections, i, mDirections, i + 1, mSize - i);
+        System.arraycopy(mOffsets, i, mOffsets, i + 1, mSize - i);
+        mKeys[i] = id;
+        mDirections[i] = direction;
+        mOffsets[i] = offset;
+        mSize++;
+    }
+
+    public void remove(long id) {
+        int i = indexOfKey(id);
+
+        if (i >= 0) {
+            System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i - 1);
+            System.arraycopy(mDirections, i + 1, mDirections, i, mSize - i - 1);
+            System.arraycopy(mOffsets, i + 1, mOffsets, i, mSize - i - 1);
+            mSize--;
+        }
+    }
+
+    /**
+     * Forget every state but the one of the given item.
+     */
+    public void clearExcept(long id) {
+        int i = indexOfKey(id);
+
+        if (i >= 0) {
+            mKeys[0] = mKeys[i];
+            mDirections[0] = mDirections[i];
+            mOffsets[0] = mOffsets[i];
+            mSize = 1;
+        } else {
+            mSize = 0;
+        }
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public void copyFrom(SwipeStates states) {
+        mKeys = new long[states.mKeys.length];
+        mDirections = new int[states.mKeys.length];
+        mOffsets = new int[states.mKeys.length];
+        System.arraycopy(states.mKeys, 0, mKeys, 0, states.mSize);
+        System.arraycopy(states.mDirections, 0, mDirections, 0, states.mSize);
+        System.arraycopy(states.mOffsets, 0, mOffsets, 0, states.mSize);
+        mSize = states.mSize;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(mSize);
+        for (int i = 0; i < mSize; i++) {
+            dest.writeLong(mKeys[i]);
+            dest.writeInt(mDirections[i]);
+            dest.writeInt(mOffsets[i]);
+        }
+    }
+
+    public static final Parcelable.Creator<SwipeStates> CREATOR = new Parcelable.Creator<SwipeStates>() {
+        public SwipeStates createFromParcel(Parcel in) {
+            int size = in.readInt();
+            SwipeStates states = new SwipeStates(Math.max(size, 4));
+            for (int i = 0; i < size; i++) {
+                states.mKeys[i] = in.readLong();
+                states.mDirections[i] = in.readInt();
+                states.mOffsets[i] = in.readInt();
+            }
+            states.mSize = size;
+            return states;
+        }
+
+        public SwipeStates[] newArray(int size) {
+            return new SwipeStates[size];
+        }
+    };
+}
@@ -0,0 +1,161 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import android.os.AsyncTask;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import java.util.concurrent.Executor;
+
+/**
+ * Text laid out ahead of binding: StaticLayouts built on a background thread for rows about to be
+ * shown, kept by item id and version in a direct-mapped table, so a bind only picks up a layout
+ * already measured and broken into lines. A miss is laid out on the spot.
+ *
+ * All layouts share the paint and the width of the cache; changing the width drops them. The
+ * text is read on the background thread, so it must not change once handed over, as the chars of
+ * a ContactSnapshot do not.
+ */
+public class TextLayoutCache {
+    private final TextPaint mPaint;
+    private final Executor mExecutor;
+
+    // Guarded by this. A slot keeps its layout, which may be on screen, until the one being built
+    // for it is put.
+    private final long[] mIds;
+    private final long[] mVersions;
+    private final Layout[] mLayouts;
+    private final boolean[] mUsed;
+    private final long[] mPendingIds;
+    private final long[] mPendingVersions;
+    private final boolean[] mPending;
+    private int mWidth;
+    private int mGeneration; // of the width; layouts built for another one are dropped
+
+    /**
+     * @param slots layouts kept at most, a power of two.
+     */
+    public TextLayoutCache(TextPaint paint, int slots) {
+        this(paint, slots, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    public TextLayoutCache(TextPaint paint, int slots, Executor executor) {
+        if (slots <= 0 || (slots & (slots - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid slots " + slots);
+        }
+
+        mPaint = paint;
+        mExecutor = executor;
+        mIds = new long[slots];
+        mVersions = new long[slots];
+        mLayouts = new Layout[slots];
+        mUsed = new boolean[slots];
+        mPendingIds = new long[slots];
+        mPendingVersions = new long[slots];
+        mPending = new boolean[slots];
+    }
+
+    /**
+     * Set the width text is laid out in, as when the view showing it is sized. Layouts of
+     * another width are dropped.
+     */
+    public synchronized void setWidth(int width) {
+        if (width == mWidth) {
+            return;
+        }
+        mWidth = width;
+        mGeneration++;
+        for (int i = 0; i < mUsed.length; i++) {
+            mUsed[i] = false;
+            mLayouts[i] = null;
+            mPending[i] = false;
+        }
+    }
+
+    public synchronized int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the layout of this item, or null if it is not ready.
+     */
+    public synchronized Layout get(long id, long version) {
+        int slot = slot(id);
+        return (mUsed[slot] && mIds[slot] == id && mVersions[slot] == version) ? mLayouts[slot] : null;
+    }
+
+    /**
+     * @return the layout of this item, laid out now if it is not ready.
+     */
+    public Layout obtain(long id, long version, char[] chars, int start, int length) {
+        Layout layout = get(id, version);
+        if (layout != null) {
+            return layout;
+        }
+
+        int width;
+        int generation;
+        synchronized (this) {
+            width = mWidth;
+            generation = mGeneration;
+        }
+        layout = build(chars, start, length, width);
+        put(id, version, layout, generation);
+        return layout;
+    }
+
+    /**
+     * Lay out the text of this item on the background thread, unless it is ready or on its way.
+     */
+    public void prefetch(final long id, final long version, final char[] chars, final int start, final int length) {
+        final int width;
+        final int generation;
+        synchronized (this) {
+            int slot = slot(id);
+            if (mWidth <= 0 || (mUsed[slot] && mIds[slot] == id && mVersions[slot] == version)
+                    || (mPending[slot] && mPendingIds[slot] == id && mPendingVersions[slot] == version)) {
+                return;
+            }
+            mPending[slot] = true;
+            mPendingIds[slot] = id;
+            mPendingVersions[slot] = version;
+            width = mWidth;
+            generation = mGeneration;
+        }
+
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                put(id, version, build(chars, start, length, width), generation);
+            }
+        });
+    }
+
+    private synchronized void put(long id, long version, Layout layout, int generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        int slot = slot(id);
+        if (mPending[slot] && mPendingIds[slot] == id && mPendingVersions[slot] == version) {
+            mPending[slot] = false;
+        }
+        mUsed[slot] = true;
+        mIds[slot] = id;
+        mVersions[slot] = version;
+        mLayouts[slot] = layout;
+    }
+
+    private Layout build(char[] chars, int start, int length, int width) {
+        // A paint of its own, as layouts are built on several threads and drawn on another.
+        return new StaticLayout(new String(chars, start, length), new TextPaint(mPaint), Math.max(width, 0),
+                Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false);
+    }
+
+    private int slot(long id) {
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 16);
+        return hash & (mIds.length - 1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AlphabetSectionsTest {
+    private final AlphabetSections sections = new AlphabetSections("#ABCDE");
+
+    @Test
+    public void sectionsByFirstLetter() {
+        assertEquals(1, sections.sectionOf("alice"));
+        assertEquals(2, sections.sectionOf("Bob"));
+        assertEquals(5, sections.sectionOf("\u00c9mile"));
+        assertEquals(3, sections.sectionOf("\u00c7a"));
+        assertEquals(0, sections.sectionOf("Zoe"));
+        assertEquals(0, sections.sectionOf("42"));
+        assertEquals(0, sections.sectionOf(""));
+        assertEquals(0, sections.sectionOf(null));
+    }
+
+    @Test
+    public void emptySectionsPointToTheNextOne() {
+        byte[] rowSections = {0, 1, 1, 3, 3, 5};
+
+        assertArrayEquals(new int[] {0, 1, 3, 3, 5, 5}, sections.getPositions(rowSections, null, 6));
+    }
+
+    @Test
+    public void positionsSkipHiddenRows() {
+        byte[] rowSections = {0, 1, 1, 3, 3, 5};
+        int[] rows = {1, 3, 5}; // rows 0, 2 and 4 hidden
+
+        assertArrayEquals(new int[] {0, 0, 1, 1, 2, 2}, sections.getPositions(rowSections, rows, 3));
+        assertArrayEquals(new int[] {0, 0, 0, 0, 0, 0}, sections.getPositions(rowSections, rows, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyAlphabet() {
+        new AlphabetSections("");
+    }
+}
@@ -0,0 +1,61 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ContactDiffTest {
+    @Test
+    public void sameRowsAreEmpty() {
+        long[] ids = {5, 3, 9, 1};
+        ContactDiff diff = ContactDiff.compute(ids, new long[] {1, 1, 1, 1}, ids.clone(), new long[] {1, 1, 1, 1});
+        assertTrue(diff.isEmpty());
+        for (int row = 0; row < ids.length; row++) {
+            assertEquals(row, diff.getOldRow(row));
+        }
+    }
+
+    @Test
+    public void insertsAndRemovals() {
+        ContactDiff diff = ContactDiff.compute(new long[] {10, 20, 30, 40}, null, new long[] {5, 10, 30, 40, 50}, null);
+        assertEquals(2, diff.getInsertedCount());
+        assertEquals(1, diff.getRemovedCount());
+        assertEquals(0, diff.getMovedCount());
+        assertEquals(-1, diff.getOldRow(0));
+        assertEquals(0, diff.getOldRow(1));
+        assertEquals(2, diff.getOldRow(2));
+        assertEquals(-1, diff.getOldRow(4));
+    }
+
+    @Test
+    public void aRenameMovesOneRow() {
+        // 40 renamed to sort first
+        ContactDiff diff = ContactDiff.compute(new long[] {10, 20, 30, 40}, new long[] {0, 0, 0, 0},
+                new long[] {40, 10, 20, 30}, new long[] {7, 0, 0, 0});
+        assertEquals(1, diff.getMovedCount());
+        assertEquals(1, diff.getChangedCount());
+        assertTrue(diff.isChanged(0));
+        assertFalse(diff.isChanged(1));
+        assertEquals(3, diff.getOldRow(0));
+    }
+
+    @Test
+    public void largeLists() {
+        int count = 100000;
+        long[] oldIds = new long[count];
+        long[] newIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            oldIds[i] = (i * 7919L) % 1000003;
+            newIds[i] = oldIds[i];
+        }
+        // Swap two far apart rows
+        newIds[10] = oldIds[90000];
+        newIds[90000] = oldIds[10];
+
+        ContactDiff diff = ContactDiff.compute(oldIds, null, newIds, null);
+        assertEquals(0, diff.getInsertedCount());
+        assertEquals(0, diff.getRemovedCount());
+        assertEquals(2, diff.getMovedCount());
+        assertEquals(90000, diff.getOldRow(10));
+    }
+}
@@ -0,0 +1,315 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.Context;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.text.TextPaint;
+import android.view.View;
+import android.widget.ListView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Scrolls ContactListAdapter through a stub address book on the JVM, with Robolectric, and
+ * reports what a row costs as the app gets it: a new row from getView(), inflated against the
+ * list and bound; a recycled row bound again by getView(), SwipeCoordinator included; loading
+ * its page; the heap allocated per bound row and the heap a row retains. SwipeListItem.accept(),
+ * for lists without a coordinator, is timed apart on the same rows. Then types a query into the
+ * filter, and reports what a keystroke costs: the search and the pager's rows positioned again.
+ *
+ * Times are those of Robolectric on the JVM, not of a device; they are meant to be compared
+ * between builds. Results are written one per line, in a fixed order, to a JSON file to diff.
+ *
+ * Not part of the unit tests; run with
+ *
+ *   ./gradlew :app:testDebugUnitTest -PcontactListBench="--rows 10000"
+ *
+ * Arguments, all optional:
+ *
+ *   --rows N         contacts in the stub provider, 10000 by default
+ *   --warmup N       scrolls through all of them not measured, 1 by default
+ *   --iterations N   scrolls measured, 3 by default
+ *   --retained N     rows kept to measure the heap they retain, 200 by default
+ *   --out FILE       build/reports/benchmark/contact-list.json by default
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ContactListBenchmark {
+    private static final String AUTHORITY = "com.hsinkoyu.android.swipelistitem.bench";
+    private static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/contacts");
+
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_PAGES = 8;
+    private static final int VISIBLE_ROWS = 12; // a screenful
+    private static final int RECYCLED_ROWS = VISIBLE_ROWS + 2;
+    private static final String QUERY = "mado ma";
+
+    private static final SwipeListItem.OnSwipeListener IDLE = new SwipeListItem.OnSwipeListener() {
+        public void onReady() {}
+        public void onStart(int direction, int distance) {}
+        public void onMove(int direction, int distance) {}
+        public void onGoCancelling(int direction, int distance) {}
+        public void onCancelled(int direction, int distance) {}
+        public void onGoSwiping(int direction, int distance) {}
+        public void onSwiped(int direction, int distance) {}
+    };
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private final QueuedExecutor mExecutor = new QueuedExecutor();
+    private ListView mList;
+    private ContactPager mPager;
+    private ContactListAdapter mAdapter;
+
+    // Totals of the measured scrolls
+    private long mNewViewNanos;
+    private long mAcceptNanos;
+    private long mNewViews;
+    private long mBindNanos;
+    private long mBindBytes;
+    private long mBound;
+    private long mLoadNanos;
+    private long mPlaceholders;
+
+    private final com.sun.management.ThreadMXBean mAllocations;
+    private final long mThread = Thread.currentThread().getId();
+    private long mAllocationOverhead;
+
+    public ContactListBenchmark() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        mAllocations = (threads instanceof com.sun.management.ThreadMXBean)
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        if (mAllocations != null) {
+            // What reading the counter allocates by itself, taken off every measure.
+            long first = mAllocations.getThreadAllocatedBytes(mThread);
+            mAllocationOverhead = mAllocations.getThreadAllocatedBytes(mThread) - first;
+        }
+    }
+
+    @Test
+    public void scrollAndBind() throws IOException {
+        int rows = 10000;
+        int warmup = 1;
+        int iterations = 3;
+        int retained = 200;
+        String out = "build/reports/benchmark/contact-list.json";
+
+        String property = System.getProperty("contactListBench");
+        String[] args = (property != null && property.trim().length() > 0) ? property.trim().split("\\s+") : new String[0];
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if ("--rows".equals(args[i])) {
+                rows = Integer.parseInt(args[i + 1]);
+            } else if ("--warmup".equals(args[i])) {
+                warmup = Integer.parseInt(args[i + 1]);
+            } else if ("--iterations".equals(args[i])) {
+                iterations = Integer.parseInt(args[i + 1]);
+            } else if ("--retained".equals(args[i])) {
+                retained = Integer.parseInt(args[i + 1]);
+            } else if ("--out".equals(args[i])) {
+                out = args[i + 1];
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        StubContactsProvider provider = new StubContactsProvider();
+        provider.fill(rows);
+        ShadowContentResolver.registerProvider(AUTHORITY, provider);
+        setUp();
+
+        for (int i = 0; i < warmup; i++) {
+            scroll();
+        }
+        resetTotals();
+        for (int i = 0; i < iterations; i++) {
+            scroll();
+        }
+        long retainedBytes = retainedBytesPerRow(retained);
+        long filterNanos = filterNanosPerKeystroke(warmup, iterations);
+
+        String[] keys = {
+                "rows", "iterations", "new_view_ns_per_row", "accept_ns_per_row", "bind_ns_per_row",
+                "page_load_ns_per_row", "alloc_bytes_per_bound_row", "retained_bytes_per_row", "placeholder_binds",
+                "filter_ns_per_keystroke"
+        };
+        Object[] values = {
+                rows, iterations, mNewViewNanos / mNewViews, mAcceptNanos / mNewViews, mBindNanos / mBound,
+                mLoadNanos / mBound, (mAllocations != null) ? String.valueOf(mBindBytes / mBound) : "null",
+                retainedBytes, mPlaceholders, filterNanos
+        };
+        write(new File(out), keys, values);
+    }
+
+    private void setUp() {
+        mList = new ListView(mContext);
+
+        mPager = new ContactPager(mContext.getContentResolver(), CONTENT_URI, MainActivity.PROJECTION,
+                null, MainActivity.SORT_ORDER, PAGE_SIZE, MAX_PAGES, mExecutor);
+        mPager.setVersionColumn(ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP);
+        mPager.setSectionColumn(ContactsContract.Contacts.SORT_KEY_PRIMARY,
+                new AlphabetSections(mContext.getString(R.string.fast_scroll_alphabet)));
+
+        mAdapter = new ContactListAdapter(mContext, R.layout.contact_list_item, new int[0], new int[0]);
+        mAdapter.setPhotoLoader(new PhotoLoader(mContext, 96, 4 * 1024 * 1024, 0, mExecutor),
+                MainActivity.COLUMN_PHOTO, R.id.photo);
+        TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(mContext.getResources().getDimension(R.dimen.contact_name_text_size));
+        mAdapter.setNameLayouts(new TextLayoutCache(paint, 256, mExecutor), MainActivity.COLUMN_NAME, R.id.name);
+        SwipeCoordinator coordinator = SwipeCoordinator.attach(mList, SwipeListItem.SWIPE_LEFT, SwipeListItem.TYPE_PULL_OUT);
+        mAdapter.setSwipeCoordinator(coordinator);
+        mAdapter.setContacts(mPager);
+
+        mPager.load();
+        mExecutor.drain();
+    }
+
+    private void resetTotals() {
+        mNewViewNanos = 0;
+        mAcceptNanos = 0;
+        mNewViews = 0;
+        mBindNanos = 0;
+        mBindBytes = 0;
+        mBound = 0;
+        mLoadNanos = 0;
+        mPlaceholders = 0;
+    }
+
+    /*
+     * Have the adapter make a screenful of rows, then bind every position in turn, recycling the
+     * rows as a ListView does. Pages are loaded between binds, as they would be on the
+     * background thread; a page loaded while its rows are shown has them bound again.
+     */
+    private void scroll() {
+        int count = mAdapter.getCount();
+        View[] recycled = new View[RECYCLED_ROWS];
+        for (int i = 0; i < recycled.length; i++) {
+            long start = System.nanoTime();
+            recycled[i] = mAdapter.getView(Math.min(i, count - 1), null, mList);
+            mNewViewNanos += System.nanoTime() - start;
+            mNewViews++;
+
+            // The coordinator does the swiping in the app; accept() is what a list without one pays.
+            start = System.nanoTime();
+            SwipeListItem.accept(mContext, recycled[i], mList, SwipeListItem.SWIPE_LEFT,
+                    SwipeListItem.TYPE_PULL_OUT, null, IDLE);
+            mAcceptNanos += System.nanoTime() - start;
+            SwipeListItem.reject(recycled[i]);
+        }
+
+        for (int position = 0; position < count; position++) {
+            bind(position, recycled[position % recycled.length]);
+
+            long start = System.nanoTime();
+            boolean loaded = mExecutor.drain();
+            mLoadNanos += System.nanoTime() - start;
+            if (loaded) {
+                // As notifyDataSetChanged() would, for the rows on screen
+                for (int shown = Math.max(0, position - VISIBLE_ROWS + 1); shown <= position; shown++) {
+                    bind(shown, recycled[shown % recycled.length]);
+                }
+            }
+        }
+    }
+
+    private void bind(int position, View row) {
+        long bytes = (mAllocations != null) ? mAllocations.getThreadAllocatedBytes(mThread) : 0;
+        long start = System.nanoTime();
+        mAdapter.getView(position, row, mList);
+        mBindNanos += System.nanoTime() - start;
+        if (mAllocations != null) {
+            mBindBytes += Math.max(mAllocations.getThreadAllocatedBytes(mThread) - bytes - mAllocationOverhead, 0);
+        }
+        mBound++;
+        if (!mPager.isLoaded(position)) {
+            mPlaceholders++;
+        }
+    }
+
+    /*
+     * The heap taken by rows inflated and bound, kept alive, over the heap without them. They
+     * show the rows of the last page, loaded by the scroll, so no page comes into the measure.
+     */
+    private long retainedBytesPerRow(int count) {
+        int last = mAdapter.getCount() - 1;
+        long before = usedHeap();
+        View[] rows = new View[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = mAdapter.getView(last - i % Math.min(PAGE_SIZE / 2, last + 1), null, mList);
+        }
+        long after = usedHeap();
+        long perRow = (after - before) / count;
+        // Keep them reachable until measured.
+        return (rows[count - 1] != null) ? perRow : 0;
+    }
+
+    /*
+     * Type the query a character at a time, then clear it, as many times as scrolled after as
+     * many not measured. Each keystroke searches the index and filters the pager's positions.
+     */
+    private long filterNanosPerKeystroke(int warmup, int iterations) {
+        final ContactSearchIndex[] built = new ContactSearchIndex[1];
+        mPager.buildSearchIndex(MainActivity.COLUMN_NAME, new ContactPager.OnSearchIndexListener() {
+            public void onSearchIndexBuilt(ContactSearchIndex index) {
+                built[0] = index;
+            }
+        });
+        mExecutor.drain();
+        mAdapter.setSearchIndex(built[0]);
+
+        long nanos = 0;
+        int keystrokes = 0;
+        for (int i = 0; i < warmup + iterations; i++) {
+            for (int length = 1; length <= QUERY.length(); length++) {
+                String typed = QUERY.substring(0, length);
+                long start = System.nanoTime();
+                mAdapter.filter(typed);
+                if (i >= warmup) {
+                    nanos += System.nanoTime() - start;
+                    keystrokes++;
+                }
+            }
+            mAdapter.filter("");
+        }
+        return (keystrokes > 0) ? nanos / keystrokes : 0;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void write(File file, String[] keys, Object[] values) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        for (int i = 0; i < keys.length; i++) {
+            json.append("  \"").append(keys[i]).append("\": ").append(values[i]);
+            json.append((i < keys.length - 1) ? ",\n" : "\n");
+        }
+        json.append("}\n");
+        System.out.print(json);
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ContactPagerTest {
+    private static final String AUTHORITY = "com.hsinkoyu.android.swipelistitem.pager";
+    private static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/contacts");
+
+    private static final int ROWS = 100;
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_PAGES = 3;
+
+    /*
+     * The stub, counting its queries, and leaving a deleted id out of them.
+     */
+    private static class CountingProvider extends StubContactsProvider {
+        int mQueries;
+        int mPageQueries; // by ids
+        long mDeleted;
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            mQueries++;
+            if (selection != null && selection.contains(" IN (")) {
+                mPageQueries++;
+            }
+
+            Cursor cursor = super.query(uri, projection, selection, selectionArgs, sortOrder);
+            if (mDeleted == 0) {
+                return cursor;
+            }
+            MatrixCursor kept = new MatrixCursor(projection);
+            String[] values = new String[projection.length];
+            while (cursor.moveToNext()) {
+                if (cursor.getLong(0) != mDeleted) {
+                    for (int column = 0; column < values.length; column++) {
+                        values[column] = cursor.getString(column);
+                    }
+                    kept.addRow(values);
+                }
+            }
+            cursor.close();
+            return kept;
+        }
+    }
+
+    private final CountingProvider mProvider = new CountingProvider();
+    private final QueuedExecutor mExecutor = new QueuedExecutor();
+    private ContactPager mPager;
+    private int mChanges;
+
+    @Before
+    public void setUp() {
+        mProvider.fill(ROWS);
+        ShadowContentResolver.registerProvider(AUTHORITY, mProvider);
+
+        mPager = new ContactPager(RuntimeEnvironment.application.getContentResolver(), CONTENT_URI,
+                MainActivity.PROJECTION, null, MainActivity.SORT_ORDER, PAGE_SIZE, MAX_PAGES, mExecutor);
+        mPager.setVersionColumn(ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP);
+        mPager.setSectionColumn(ContactsContract.Contacts.SORT_KEY_PRIMARY, new AlphabetSections("#ABCDEFGHIJKLMNOPQRSTUVWXYZ"));
+        mPager.setCallback(new ContactPager.Callback() {
+            public void onReloaded(ContactDiff diff) {}
+
+            public void onChanged() {
+                mChanges++;
+            }
+
+            public void onRowsLoaded() {}
+        });
+    }
+
+    @Test
+    public void firstPageComesAloneWithALimit() {
+        mPager.load();
+        mExecutor.runNext();
+
+        assertEquals(PAGE_SIZE, mPager.getCount());
+        assertTrue(mPager.isLoaded(PAGE_SIZE - 1));
+        assertEquals(0, mProvider.mPageQueries);
+
+        mExecutor.drain();
+        assertEquals(ROWS, mPager.getCount());
+        // The same first page, kept
+        assertTrue(mPager.isLoaded(0));
+        assertEquals(0, mProvider.mPageQueries);
+    }
+
+    @Test
+    public void placeholdersUntilTheirPageLoads() {
+        load();
+
+        int position = 5 * PAGE_SIZE + 5;
+        long id = mPager.getId(position);
+        assertFalse(mPager.isLoaded(position));
+        assertNull(mPager.getString(position, MainActivity.COLUMN_NAME));
+        assertNull(mPager.getRows(position));
+
+        mExecutor.drain();
+        assertTrue(mPager.isLoaded(position));
+        assertEquals(id, mPager.getId(position));
+        assertNotNull(mPager.getString(position, MainActivity.COLUMN_NAME));
+        assertTrue(mProvider.mPageQueries > 0);
+    }
+
+    @Test
+    public void distantPagesAreEvicted() {
+        load();
+        assertTrue(mPager.isLoaded(0));
+
+        // Far enough for page 0 to be the farthest of more than MAX_PAGES
+        for (int page = 3; page <= 9; page++) {
+            mPager.isLoaded(page * PAGE_SIZE + PAGE_SIZE / 2);
+            mExecutor.drain();
+        }
+        assertTrue(mPager.isLoaded(9 * PAGE_SIZE));
+
+        int queries = mProvider.mPageQueries;
+        assertFalse(mPager.isLoaded(0));
+        mExecutor.drain();
+        assertTrue(mPager.isLoaded(0));
+        assertTrue(mProvider.mPageQueries > queries);
+    }
+
+    @Test
+    public void unchangedReloadKeepsPages() {
+        load();
+        mPager.isLoaded(PAGE_SIZE + PAGE_SIZE / 2);
+        mExecutor.drain();
+        ContactSnapshot first = mPager.getRows(0);
+        ContactSnapshot second = mPager.getRows(PAGE_SIZE + PAGE_SIZE / 2);
+        int queries = mProvider.mQueries;
+        int changes = mChanges;
+
+        mPager.load();
+        mExecutor.drain();
+        assertEquals(queries + 1, mProvider.mQueries); // the ids only
+        assertEquals(changes, mChanges);
+        assertSame(first, mPager.getRows(0));
+        assertSame(second, mPager.getRows(PAGE_SIZE + PAGE_SIZE / 2));
+    }
+
+    @Test
+    public void reloadCarriesUnchangedRowsOver() {
+        load();
+        long[] ids = ids();
+        mPager.isLoaded(PAGE_SIZE + PAGE_SIZE / 2);
+        mExecutor.drain();
+        mPager.isLoaded(0);
+        mExecutor.drain();
+        String name = mPager.getString(13, MainActivity.COLUMN_NAME);
+        ContactSnapshot second = mPager.getRows(13);
+        int rowInRows = mPager.getRowInRows(13);
+        ContactSnapshot first = mPager.getRows(0);
+        int changes = mChanges;
+
+        // Deleted from the second page; the rows after it move up a position.
+        mProvider.mDeleted = ids[12];
+        mPager.load();
+        mExecutor.drain();
+        assertEquals(changes + 1, mChanges);
+        assertEquals(ROWS - 1, mPager.getCount());
+        assertSame(first, mPager.getRows(0));
+        assertEquals(ids[13], mPager.getId(12));
+        // Still in the snapshot it came in, not queried again
+        assertSame(second, mPager.getRows(12));
+        assertEquals(rowInRows, mPager.getRowInRows(12));
+        assertEquals(name, mPager.getString(12, MainActivity.COLUMN_NAME));
+    }
+
+    @Test
+    public void hiddenIdsShiftPositionsAndSections() {
+        load();
+        long[] ids = ids();
+        int[] sections = new int[ROWS];
+        for (int position = 0; position < ROWS; position++) {
+            sections[position] = mPager.getSectionForPosition(position);
+        }
+
+        int hidden = 3;
+        long[] hiddenIds = Arrays.copyOf(ids, hidden);
+        Arrays.sort(hiddenIds);
+        mPager.setHiddenIds(hiddenIds);
+
+        assertEquals(ROWS - hidden, mPager.getCount());
+        for (int position = 0; position < ROWS - hidden; position++) {
+            assertEquals(ids[position + hidden], mPager.getId(position));
+            assertEquals(sections[position + hidden], mPager.getSectionForPosition(position));
+        }
+        // Sorted by name, so the sections follow the positions
+        for (int section = 0; section < mPager.getSections().length; section++) {
+            int expected = ROWS - hidden;
+            for (int position = 0; position < ROWS - hidden; position++) {
+                if (sections[position + hidden] >= section) {
+                    expected = position;
+                    break;
+                }
+            }
+            assertEquals(expected, mPager.getPositionForSection(section));
+        }
+
+        long[] filter = {ids[hidden + 1], ids[50]};
+        Arrays.sort(filter);
+        mPager.setFilter(filter);
+        assertEquals(2, mPager.getCount());
+        assertEquals(ids[hidden + 1], mPager.getId(0));
+        assertEquals(ids[50], mPager.getId(1));
+        assertEquals(sections[50], mPager.getSectionForPosition(1));
+    }
+
+    @Test
+    public void searchResultFiltersByIndexRows() {
+        load();
+        long[] ids = ids();
+        final ContactSearchIndex[] built = new ContactSearchIndex[1];
+        mPager.buildSearchIndex(MainActivity.COLUMN_NAME, new ContactPager.OnSearchIndexListener() {
+            public void onSearchIndexBuilt(ContactSearchIndex index) {
+                built[0] = index;
+            }
+        });
+        mExecutor.drain();
+
+        ContactSearchIndex.Result result = built[0].search("a");
+        assertTrue(result.getCount() > 1 && result.getCount() < ROWS);
+        long[] hiddenIds = {built[0].getId(result.getRow(0))};
+        mPager.setHiddenIds(hiddenIds);
+        mPager.setFilter(result);
+        assertEquals(result.getCount() - 1, mPager.getCount());
+        for (int position = 0; position < mPager.getCount(); position++) {
+            assertEquals(ids[result.getRow(position + 1)], mPager.getId(position));
+        }
+
+        // An index built before a deletion no longer lines up with the rows, and goes by ids.
+        mProvider.mDeleted = built[0].getId(result.getRow(1));
+        mPager.load();
+        mExecutor.drain();
+        assertEquals(result.getCount() - 2, mPager.getCount());
+        for (int position = 0; position < mPager.getCount(); position++) {
+            assertEquals(ids[result.getRow(position + 2)], mPager.getId(position));
+        }
+
+        mPager.setFilter((ContactSearchIndex.Result) null);
+        assertEquals(ROWS - 2, mPager.getCount());
+    }
+
+    private void load() {
+        mPager.load();
+        mExecutor.drain();
+        assertEquals(ROWS, mPager.getCount());
+    }
+
+    private long[] ids() {
+        long[] ids = new long[mPager.getCount()];
+        for (int position = 0; position < ids.length; position++) {
+            ids[position] = mPager.getId(position);
+        }
+        mExecutor.drain();
+        return ids;
+    }
+}
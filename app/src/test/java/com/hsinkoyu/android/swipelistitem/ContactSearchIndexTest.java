@@ -0,0 +1,99 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ContactSearchIndexTest {
+    private static ContactSearchIndex index(String... names) {
+        ContactSearchIndex.Builder builder = new ContactSearchIndex.Builder(names.length);
+        for (int i = 0; i < names.length; i++) {
+            builder.add(100 + i, names[i]);
+        }
+        return builder.build();
+    }
+
+    private static int[] rows(ContactSearchIndex.Result result) {
+        int[] rows = new int[result.getCount()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = result.getRow(i);
+        }
+        return rows;
+    }
+
+    @Test
+    public void normalizesCaseDiacriticsAndSeparators() {
+        assertEquals("marie joelle", ContactSearchIndex.normalize("  Marie-Jo\u00eblle "));
+        assertEquals("lodz strasse", ContactSearchIndex.normalize("\u0141\u00f3d\u017a Stra\u00dfe"));
+        assertEquals("", ContactSearchIndex.normalize("--"));
+    }
+
+    @Test
+    public void matchesPrefixesOfAnyWord() {
+        ContactSearchIndex index = index("Marie-Jo\u00eblle Dupont", "John Smith", "Joanna Marsh", "Bob");
+
+        assertArrayEquals(new int[] {0, 1, 2}, rows(index.search("jo")));
+        assertArrayEquals(new int[] {0, 2}, rows(index.search("MAR")));
+        assertArrayEquals(new int[] {0, 2}, rows(index.search("jo mar")));
+        assertArrayEquals(new int[] {0}, rows(index.search("jo\u00eb")));
+        assertArrayEquals(new int[] {1}, rows(index.search("smith j")));
+        assertEquals(0, index.search("x").getCount());
+        assertNull(index.search(" "));
+    }
+
+    @Test
+    public void wordsDoNotRunIntoTheNextName() {
+        // "Al" ending a name must not make "albert" match across names
+        ContactSearchIndex index = index("Sam Al", "Bert Jones");
+        assertEquals(0, index.search("albert").getCount());
+        assertEquals(0, index.search("sam albert").getCount());
+    }
+
+    @Test
+    public void extendingAQueryNarrowsTheResult() {
+        ContactSearchIndex index = index("John Smith", "Joanna Marsh", "Jonas Brown");
+        ContactSearchIndex.Result jo = index.search("jo");
+        ContactSearchIndex.Result jon = index.search("jon", jo);
+        assertArrayEquals(new int[] {2}, rows(jon));
+        assertSame(jon, index.search("jon ", jon));
+
+        // Not an extension: searched again
+        assertArrayEquals(new int[] {0}, rows(index.search("joh", jon)));
+        assertArrayEquals(new long[] {100}, index.search("jo s", jo).getIds());
+    }
+
+    @Test
+    public void typingOverALargeIndex() {
+        Random random = new Random(42);
+        String[] syllables = {"an", "ber", "cha", "do", "el", "fi", "go", "ha", "is", "jo", "ka", "lu", "mar", "no", "pe", "ri", "sa", "to"};
+        ContactSearchIndex.Builder builder = new ContactSearchIndex.Builder(100000);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int w = 0; w < 2; w++) {
+                if (w > 0) {
+                    name.append(' ');
+                }
+                for (int s = 0; s < 3; s++) {
+                    name.append(syllables[random.nextInt(syllables.length)]);
+                }
+            }
+            builder.add(i, name);
+        }
+        ContactSearchIndex index = builder.build();
+
+        String query = "marjo sa";
+        ContactSearchIndex.Result result = null;
+        int previous = Integer.MAX_VALUE;
+        for (int i = 1; i <= query.length(); i++) {
+            result = index.search(query.substring(0, i), result);
+            assertTrue(result == null || result.getCount() <= previous);
+            previous = (result != null) ? result.getCount() : previous;
+        }
+        assertTrue(result.getCount() > 0);
+
+        // Everything found narrowing is what a fresh search finds
+        assertArrayEquals(rows(index.search(query)), rows(result));
+    }
+}
@@ -0,0 +1,35 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/*
+ * Holds background work, such as that of the pager and the photo loader, until the test runs it
+ * on its own thread, along with what it posts to the main thread.
+ */
+class QueuedExecutor implements Executor {
+    final ArrayList<Runnable> mQueue = new ArrayList<Runnable>();
+
+    public void execute(Runnable command) {
+        mQueue.add(command);
+    }
+
+    void runNext() {
+        mQueue.remove(0).run();
+        ShadowLooper.runUiThreadTasks();
+    }
+
+    /*
+     * @return whether there was anything to run.
+     */
+    boolean drain() {
+        boolean ran = !mQueue.isEmpty();
+        while (!mQueue.isEmpty()) {
+            runNext();
+        }
+        ShadowLooper.runUiThreadTasks();
+        return ran;
+    }
+}
@@ -0,0 +1,111 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+
+import java.util.Arrays;
+
+/*
+ * The columns the app queries, served from generated names. Ids are given in creation order
+ * and the names sorted, so ids and positions do not follow each other, as in a real address
+ * book. Honours the limit parameter and a selection of ids "_id IN (...)", and nothing else.
+ */
+public class StubContactsProvider extends ContentProvider {
+    private static final String[] SYLLABLES = {
+            "an", "be", "ca", "do", "el", "fa", "gi", "ho", "in", "ja", "ke", "lu", "ma", "ni",
+            "or", "pa", "qui", "ro", "sa", "te", "ul", "va", "wi", "xa", "yo", "zu"
+    };
+
+    private String[] mNames; // by id - 1
+    private long[] mSortedIds;
+
+    void fill(int rows) {
+        mNames = new String[rows];
+        String[] sorted = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            int a = (i * 7) % SYLLABLES.length;
+            int b = (i * 13 + 5) % SYLLABLES.length;
+            int c = (i / SYLLABLES.length) % SYLLABLES.length;
+            String name = capitalize(SYLLABLES[a] + SYLLABLES[b]) + " " + capitalize(SYLLABLES[c] + SYLLABLES[b] + i);
+            mNames[i] = name;
+            sorted[i] = name + '\u0000' + (i + 1);
+        }
+        Arrays.sort(sorted);
+        mSortedIds = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            mSortedIds[i] = Long.parseLong(sorted[i].substring(sorted[i].indexOf('\u0000') + 1));
+        }
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        long[] ids = mSortedIds;
+        int in = (selection != null) ? selection.indexOf("IN (") : -1;
+        if (in >= 0) {
+            String[] list = selection.substring(in + 4, selection.indexOf(')', in)).split(",");
+            ids = new long[list.length];
+            for (int i = 0; i < list.length; i++) {
+                ids[i] = Long.parseLong(list[i].trim());
+            }
+        }
+        String limit = uri.getQueryParameter(ContactsContract.LIMIT_PARAM_KEY);
+        int count = (limit != null) ? Math.min(ids.length, Integer.parseInt(limit)) : ids.length;
+
+        MatrixCursor cursor = new MatrixCursor(projection, count);
+        Object[] values = new Object[projection.length];
+        for (int row = 0; row < count; row++) {
+            long id = ids[row];
+            for (int column = 0; column < projection.length; column++) {
+                values[column] = value(projection[column], id);
+            }
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+
+    private Object value(String column, long id) {
+        if (ContactsContract.Contacts._ID.equals(column)) {
+            return id;
+        } else if (ContactsContract.Contacts.DISPLAY_NAME_PRIMARY.equals(column)
+                || ContactsContract.Contacts.SORT_KEY_PRIMARY.equals(column)) {
+            return mNames[(int) id - 1];
+        } else if (ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP.equals(column)) {
+            return 1L;
+        }
+        // No photo
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+}
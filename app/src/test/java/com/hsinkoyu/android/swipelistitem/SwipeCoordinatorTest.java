@@ -0,0 +1,138 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SwipeCoordinatorTest {
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    /*
+     * Rows of contact_list_item, with an id of 100 + position.
+     */
+    private class RowAdapter extends BaseAdapter {
+        public int getCount() {
+            return 20;
+        }
+
+        public Object getItem(int position) {
+            return null;
+        }
+
+        public long getItemId(int position) {
+            return 100 + position;
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        public View getView(int position, View convertView, ViewGroup parent) {
+            View row = (convertView != null) ? convertView
+                    : LayoutInflater.from(mContext).inflate(R.layout.contact_list_item, parent, false);
+            mCoordinator.onBindView(row, getItemId(position));
+            return row;
+        }
+    }
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private final ArrayList<Long> mDismissed = new ArrayList<Long>();
+    private ListView mList;
+    private SwipeCoordinator mCoordinator;
+    private long mTime;
+
+    @Before
+    public void setUp() {
+        // Frames and collapses only run when the test says so.
+        ShadowLooper.pauseMainLooper();
+
+        mList = new ListView(mContext);
+        mCoordinator = SwipeCoordinator.attach(mList, SwipeListItem.SWIPE_LEFT, SwipeListItem.TYPE_PULL_OUT);
+        mCoordinator.setOnDismissListener(new SwipeCoordinator.OnDismissListener() {
+            public void onDismiss(long id) {
+                mDismissed.add(id);
+            }
+        });
+        mList.setAdapter(new RowAdapter());
+        mList.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mList.layout(0, 0, WIDTH, HEIGHT);
+        mTime = SystemClock.uptimeMillis();
+    }
+
+    @Test
+    public void recycledWhileSettlingToSwiped() {
+        View row = mList.getChildAt(0);
+        int height = row.getLayoutParams().height;
+        fling(row);
+
+        // Scrolled away before the settle lands; the row now shows another contact.
+        mCoordinator.onBindView(row, 200);
+        assertEquals(height, row.getLayoutParams().height);
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(1, mDismissed.size());
+        assertEquals(100L, (long) mDismissed.get(0));
+        assertEquals(height, row.getLayoutParams().height);
+        assertTrue(mCoordinator.getStates().indexOfKey(100) < 0);
+    }
+
+    @Test
+    public void restoredWhileSettlingToSwiped() {
+        View row = mList.getChildAt(0);
+        int height = row.getLayoutParams().height;
+        fling(row);
+
+        // Another row touched before the settle lands
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2, mList.getChildAt(1).getTop() + 1);
+        touch(MotionEvent.ACTION_UP, WIDTH / 2, mList.getChildAt(1).getTop() + 1);
+        assertEquals(height, row.getLayoutParams().height);
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(1, mDismissed.size());
+        assertEquals(100L, (long) mDismissed.get(0));
+        assertEquals(height, row.getLayoutParams().height);
+    }
+
+    /*
+     * A fast swipe left across the row, released before any frame: it is left settling to swiped.
+     */
+    private void fling(View row) {
+        int y = row.getTop() + row.getHeight() / 2;
+        touch(MotionEvent.ACTION_DOWN, WIDTH - 20, y);
+        for (int x = WIDTH - 60; x >= 100; x -= 60) {
+            mTime += 8;
+            touch(MotionEvent.ACTION_MOVE, x, y);
+        }
+        mTime += 8;
+        touch(MotionEvent.ACTION_UP, 100, y);
+        assertTrue(mDismissed.isEmpty());
+    }
+
+    private void touch(int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(mTime, mTime, action, x, y, 0);
+        mCoordinator.onTouch(mList, event);
+        event.recycle();
+    }
+}
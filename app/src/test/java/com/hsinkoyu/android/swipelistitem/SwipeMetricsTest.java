@@ -0,0 +1,69 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SwipeMetricsTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        SwipeMetrics.Histogram histogram = new SwipeMetrics.Histogram(10, 4);
+        assertEquals(0, histogram.percentile(50));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(5);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(15);
+        }
+        histogram.record(1000); // into the last bucket
+
+        assertEquals(100, histogram.total());
+        assertEquals(10, histogram.percentile(50));
+        assertEquals(10, histogram.percentile(90));
+        assertEquals(20, histogram.percentile(99));
+        assertEquals(40, histogram.percentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.total());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void latencyRunsToTheFrameDrawingTheMove() {
+        SwipeMetrics metrics = new SwipeMetrics(60.0f);
+        metrics.beginGesture();
+        metrics.onMoveApplied(100 * MS);
+        metrics.onMoveApplied(108 * MS);
+        metrics.onMovesDrawn(116 * MS);
+        metrics.onMovesDrawn(132 * MS); // nothing left to draw
+        metrics.endGesture(140 * MS, SwipeEngine.SWIPE_LEFT, false);
+
+        SwipeMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.moves);
+        // In 0.5 ms buckets
+        assertEquals(8.5f, snapshot.moveLatencyP50, 0.0f);
+        assertEquals(16.5f, snapshot.moveLatencyP99, 0.0f);
+    }
+
+    @Test
+    public void ringKeepsTheLatestGesturesOldestFirst() {
+        SwipeMetrics metrics = new SwipeMetrics(60.0f);
+        for (int i = 1; i <= 70; i++) {
+            metrics.beginGesture();
+            metrics.beginSettle(i * MS);
+            metrics.endGesture(2 * i * MS, SwipeEngine.SWIPE_LEFT, true);
+        }
+
+        SwipeMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(70, snapshot.gestures);
+        assertEquals(64, snapshot.recentSettleDurations.length);
+        assertEquals(7 * MS, snapshot.recentSettleDurations[0]);
+        assertEquals(70 * MS, snapshot.recentSettleDurations[63]);
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().recentSettleDurations.length);
+    }
+}
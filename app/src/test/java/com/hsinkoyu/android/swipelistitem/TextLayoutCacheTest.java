@@ -0,0 +1,36 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import android.text.Layout;
+import android.text.TextPaint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class TextLayoutCacheTest {
+    private static final char[] CHARS = "AliceBob".toCharArray();
+
+    @Test
+    public void prefetchKeepsTheLayoutInItsSlotUntilPut() {
+        QueuedExecutor executor = new QueuedExecutor();
+        // A single slot, so both ids take it
+        TextLayoutCache cache = new TextLayoutCache(new TextPaint(), 1, executor);
+        cache.setWidth(200);
+
+        Layout shown = cache.obtain(1, 0, CHARS, 0, 5);
+        cache.prefetch(2, 0, CHARS, 5, 3);
+        cache.prefetch(2, 0, CHARS, 5, 3); // already on its way
+        assertEquals(1, executor.mQueue.size());
+        assertSame(shown, cache.get(1, 0));
+        assertNull(cache.get(2, 0));
+
+        assertTrue(executor.drain());
+        assertNull(cache.get(1, 0));
+        assertNotNull(cache.get(2, 0));
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Measures what SwipeEngine costs per input, on a plain JVM: millions of synthetic gestures (drags
+ * cancelled or swiped, slow or flung, left or right, then restored) are fed as touch events and
+ * frames, and the time and the heap allocated per input are reported.
+ *
+ * Run with "./gradlew :benchmark:bench". Arguments, all optional:
+ *
+ *   --gestures N             gestures per iteration, 200000 by default
+ *   --warmup N               iterations not measured, 5 by default
+ *   --iterations N           iterations measured, 10 by default
+ *   --max-bytes-per-input B  fail if the median heap allocated per input exceeds B, 0 by default
+ *   --max-ns-per-input T     fail if the median time per input exceeds T, unchecked by default
+ *
+ * The exit status is 1 when a budget is exceeded, so a CI job can run it as is.
+ */
+public class SwipeEngineBenchmark {
+    private static final int WIDTH = 1080;
+    private static final long FRAME = 16666667L; // nanoseconds, 60 Hz
+    private static final long SAMPLE = 8333333L; // nanoseconds, 120 Hz touch sampling
+    private static final int MOVES = 40; // move events per drag
+
+    /*
+     * Consumes the callbacks so the JIT cannot drop the work.
+     */
+    static class Sink implements SwipeEngine.Callback {
+        long value;
+
+        public void onReady() { value++; }
+        public void onStart(int direction, int distance) { value += distance; }
+        public void onMove(int direction, int distance) { value += distance; }
+        public void onSettleStart(int settle, int direction, long timeNanos) { value += settle; }
+        public void onGoCancelling(int direction, int distance) { value += distance; }
+        public void onCancelled(int direction, int distance) { value += distance; }
+        public void onGoSwiping(int direction, int distance) { value += distance; }
+        public void onSwiped(int direction, int distance) { value += distance; }
+        public void onRestored() { value++; }
+        public void onOffset(int direction, int offset) { value ^= offset; }
+    }
+
+    private final Sink mSink = new Sink();
+    private final SwipeEngine mEngine = new SwipeEngine(SwipeEngine.SWIPE_LEFT | SwipeEngine.SWIPE_RIGHT, mSink);
+    private long mTime = 1;
+    private long mInputs;
+
+    SwipeEngineBenchmark(int moveDispatchMode) {
+        mEngine.setSize(WIDTH, 200);
+        mEngine.setFlingVelocities(2000, 8000);
+        mEngine.setMoveDispatchMode(moveDispatchMode);
+    }
+
+    /*
+     * One gesture, chosen by its index: direction, length and speed vary so every branch of the
+     * engine is taken.
+     */
+    void gesture(int index) {
+        float direction = (index & 1) == 0 ? -1 : 1;
+        float length = ((index & 2) == 0) ? WIDTH * 0.3f : WIDTH * 0.7f;
+        boolean fling = (index & 4) != 0;
+        float x = WIDTH / 2;
+        float y = 100;
+
+        mEngine.onTouch(SwipeEngine.ACTION_DOWN, x, y, mTime);
+        mInputs++;
+        for (int i = 1; i <= MOVES; i++) {
+            float fraction = (float) i / MOVES;
+            mTime += fling ? SAMPLE / 4 : SAMPLE;
+            mEngine.onTouch(SwipeEngine.ACTION_MOVE, x + direction * length * fraction, y + (i & 3), mTime);
+            mInputs++;
+            if ((i & 1) == 0) {
+                mEngine.doFrame(mTime);
+                mInputs++;
+            }
+        }
+        mTime += SAMPLE;
+        mEngine.onTouch(SwipeEngine.ACTION_UP, x + direction * length, y, mTime);
+        mInputs++;
+        settle();
+
+        if (mEngine.getOffset() != 0) {
+            mEngine.restore(mTime);
+            mInputs++;
+            settle();
+        }
+    }
+
+    private void settle() {
+        while (mEngine.needsFrame()) {
+            mTime += FRAME;
+            mEngine.doFrame(mTime);
+            mInputs++;
+        }
+    }
+
+    public static void main(String[] args) {
+        int gestures = 200000;
+        int warmup = 5;
+        int iterations = 10;
+        long maxBytes = 0;
+        double maxNanos = Double.MAX_VALUE;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if ("--gestures".equals(args[i])) {
+                gestures = Integer.parseInt(args[i + 1]);
+            } else if ("--warmup".equals(args[i])) {
+                warmup = Integer.parseInt(args[i + 1]);
+            } else if ("--iterations".equals(args[i])) {
+                iterations = Integer.parseInt(args[i + 1]);
+            } else if ("--max-bytes-per-input".equals(args[i])) {
+                maxBytes = Long.parseLong(args[i + 1]);
+            } else if ("--max-ns-per-input".equals(args[i])) {
+                maxNanos = Double.parseDouble(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        boolean failed = false;
+        failed |= run("per event", SwipeEngine.MOVE_DISPATCH_PER_EVENT, gestures, warmup, iterations, maxBytes, maxNanos);
+        failed |= run("per frame", SwipeEngine.MOVE_DISPATCH_PER_FRAME, gestures, warmup, iterations, maxBytes, maxNanos);
+        System.exit(failed ? 1 : 0);
+    }
+
+    /*
+     * Returns true if a budget is exceeded.
+     */
+    private static boolean run(String name, int mode, int gestures, int warmup, int iterations, long maxBytes, double maxNanos) {
+        SwipeEngineBenchmark benchmark = new SwipeEngineBenchmark(mode);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = (threads instanceof com.sun.management.ThreadMXBean)
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+        double[] nanosPerInput = new double[iterations];
+        double[] bytesPerInput = new double[iterations];
+        long inputs = 0;
+
+        // What reading the counter allocates by itself, taken off every measure.
+        long overhead = 0;
+        if (allocations != null) {
+            long first = allocations.getThreadAllocatedBytes(thread);
+            overhead = allocations.getThreadAllocatedBytes(thread) - first;
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            for (int g = 0; g < gestures; g++) {
+                benchmark.gesture(g);
+            }
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            long inputsBefore = benchmark.mInputs;
+            long bytesBefore = (allocations != null) ? allocations.getThreadAllocatedBytes(thread) : 0;
+            long start = System.nanoTime();
+            for (int g = 0; g < gestures; g++) {
+                benchmark.gesture(g);
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytesAfter = (allocations != null) ? allocations.getThreadAllocatedBytes(thread) : 0;
+            long count = benchmark.mInputs - inputsBefore;
+
+            nanosPerInput[i] = (double) elapsed / count;
+            bytesPerInput[i] = (double) Math.max(bytesAfter - bytesBefore - overhead, 0) / count;
+            inputs += count;
+        }
+
+        // Medians, so a stray compilation or collection in one iteration does not decide.
+        Arrays.sort(nanosPerInput);
+        Arrays.sort(bytesPerInput);
+        double median = nanosPerInput[iterations / 2];
+        double medianBytes = bytesPerInput[iterations / 2];
+
+        System.out.println(String.format("%s: %d inputs, %.1f ns/input (min %.1f, max %.1f), %s bytes/input [%d]",
+                name, inputs, median, nanosPerInput[0], nanosPerInput[iterations - 1],
+                (allocations != null) ? String.format("%.3f", medianBytes) : "n/a", benchmark.mSink.value));
+
+        boolean failed = false;
+        if (allocations != null && medianBytes > maxBytes) {
+            System.out.println(name + ": over the allocation budget of " + maxBytes + " bytes/input");
+            failed = true;
+        }
+        if (median > maxNanos) {
+            System.out.println(name + ": over the time budget of " + maxNanos + " ns/input");
+            failed = true;
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records a SwipeEngine session into a GestureTrace. Once started, it stands in front of the
+ * engine's callback to record every event on the way; the inputs are recorded by whoever feeds
+ * the engine, through the methods named after them, right before feeding it.
+ *
+ * Callbacks cannot throw, so the first write error stops the recording and is kept for getError().
+ */
+public class GestureRecorder implements SwipeEngine.Callback {
+    private final GestureTrace.Writer mWriter;
+    private SwipeEngine mEngine;
+    private SwipeEngine.Callback mDelegate;
+    private IOException mError;
+
+    public GestureRecorder(OutputStream out) {
+        if (out == null) {
+            throw new IllegalArgumentException("Null out");
+        }
+
+        mWriter = new GestureTrace.Writer(out);
+    }
+
+    /**
+     * Start recording the engine, whose events keep going to the given callback as well.
+     */
+    public void start(SwipeEngine engine, SwipeEngine.Callback delegate) {
+        if (mEngine != null) {
+            throw new IllegalStateException("Already recording");
+        }
+
+        mEngine = engine;
+        mDelegate = delegate;
+        try {
+            mWriter.header(engine);
+        } catch (IOException e) {
+            fail(e);
+        }
+        engine.setCallback(this);
+    }
+
+    /**
+     * Stop recording and flush. The engine gets its own callback back.
+     */
+    public void stop() {
+        if (mEngine == null) {
+            return;
+        }
+
+        mEngine.setCallback(mDelegate);
+        mEngine = null;
+        try {
+            mWriter.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Stop recording and close the trace.
+     */
+    public void close() {
+        stop();
+        try {
+            mWriter.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return the error which stopped the recording, or null.
+     */
+    public IOException getError() {
+        return mError;
+    }
+
+    public boolean isRecording() {
+        return mEngine != null && mError == null;
+    }
+
+    public void size(int width, int height) {
+        if (isRecording()) {
+            try {
+                mWriter.size(width, height);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    public void sample(float x, float y, long timeNanos) {
+        if (isRecording()) {
+            try {
+                mWriter.sample(x, y, timeNanos);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    public void touch(int action, float x, float y, long timeNanos) {
+        if (isRecording()) {
+            try {
+                mWriter.touch(action, x, y, timeNanos);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    public void frame(long timeNanos) {
+        if (isRecording()) {
+            try {
+                mWriter.frame(timeNanos);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    public void restore(long timeNanos) {
+        if (isRecording()) {
+            try {
+                mWriter.restore(timeNanos);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    public void reset() {
+        if (isRecording()) {
+            try {
+                mWriter.reset();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    public void jump(int direction, int offset) {
+        if (isRecording()) {
+            try {
+                mWriter.jump(direction, offset);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    public void onReady() {
+        event(GestureTrace.EVENT_READY, SwipeEngine.SWIPE_STILL, 0);
+        mDelegate.onReady();
+    }
+
+    public void onStart(int direction, int distance) {
+        event(GestureTrace.EVENT_START, direction, distance);
+        mDelegate.onStart(direction, distance);
+    }
+
+    public void onMove(int direction, int distance) {
+        event(GestureTrace.EVENT_MOVE, direction, distance);
+        mDelegate.onMove(direction, distance);
+    }
+
+    public void onSettleStart(int settle, int direction, long timeNanos) {
+        event(GestureTrace.EVENT_SETTLE_START, direction, settle);
+        mDelegate.onSettleStart(settle, direction, timeNanos);
+    }
+
+    public void onGoCancelling(int direction, int distance) {
+        event(GestureTrace.EVENT_GO_CANCELLING, direction, distance);
+        mDelegate.onGoCancelling(direction, distance);
+    }
+
+    public void onCancelled(int direction, int distance) {
+        event(GestureTrace.EVENT_CANCELLED, direction, distance);
+        mDelegate.onCancelled(direction, distance);
+    }
+
+    public void onGoSwiping(int direction, int distance) {
+        event(GestureTrace.EVENT_GO_SWIPING, direction, distance);
+        mDelegate.onGoSwiping(direction, distance);
+    }
+
+    public void onSwiped(int direction, int distance) {
+        event(GestureTrace.EVENT_SWIPED, direction, distance);
+        mDelegate.onSwiped(direction, distance);
+    }
+
+    public void onRestored() {
+        event(GestureTrace.EVENT_RESTORED, SwipeEngine.SWIPE_STILL, 0);
+        mDelegate.onRestored();
+    }
+
+    public void onOffset(int direction, int offset) {
+        event(GestureTrace.EVENT_OFFSET, direction, offset);
+        mDelegate.onOffset(direction, offset);
+    }
+
+    private void event(int event, int direction, int value) {
+        if (isRecording()) {
+            try {
+                mWriter.event(event, direction, value);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        if (mError == null) {
+            mError = e;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Feeds a GestureTrace back into a fresh SwipeEngine, under the recorded clock, and checks it
+ * produces the very events that were recorded, in the same order and after the same inputs.
+ *
+ * The engine is set up from the trace header; change it through getEngine() before run() to see
+ * how other thresholds or interpolators would have behaved, and setObserver() to follow what it
+ * does then.
+ */
+public class GestureReplay {
+    private static final int FIELDS = 3; // event, direction, value
+
+    private final GestureTrace.Reader mReader;
+    private final SwipeEngine mEngine;
+    private SwipeEngine.Callback mObserver;
+
+    // Events produced by the engine and not matched with the trace yet
+    private int[] mPending = new int[16 * FIELDS];
+    private int mPendingStart;
+    private int mPendingEnd;
+
+    private int mInputs;
+    private int mEvents;
+    private String mMismatch;
+
+    public GestureReplay(InputStream in) throws IOException {
+        mReader = new GestureTrace.Reader(in);
+        mEngine = new SwipeEngine(mReader.getAcceptedDirections(), new Collector());
+        mReader.configure(mEngine);
+    }
+
+    public SwipeEngine getEngine() {
+        return mEngine;
+    }
+
+    /**
+     * Also pass every event the engine produces to the given callback.
+     */
+    public void setObserver(SwipeEngine.Callback observer) {
+        mObserver = observer;
+    }
+
+    /**
+     * Replay the whole trace, stopping at the first difference.
+     *
+     * @return true if the engine produced exactly the recorded events.
+     */
+    public boolean run() throws IOException {
+        while (mReader.next()) {
+            int tag = mReader.getTag();
+
+            if (tag == GestureTrace.EVENT) {
+                if (!match(mReader.getEvent(), mReader.getDirection(), mReader.getValue())) {
+                    return false;
+                }
+                continue;
+            }
+
+            // Everything the previous input caused must have been recorded after it.
+            if (!drained()) {
+                return false;
+            }
+
+            mInputs++;
+            switch (tag) {
+                case GestureTrace.SIZE:
+                    mEngine.setSize(mReader.getWidth(), mReader.getHeight());
+                    break;
+                case GestureTrace.SAMPLE:
+                    mEngine.addSample(mReader.getX(), mReader.getY(), mReader.getTime());
+                    break;
+                case GestureTrace.TOUCH:
+                    mEngine.onTouch(mReader.getAction(), mReader.getX(), mReader.getY(), mReader.getTime());
+                    break;
+                case GestureTrace.FRAME:
+                    mEngine.doFrame(mReader.getTime());
+                    break;
+                case GestureTrace.RESTORE:
+                    mEngine.restore(mReader.getTime());
+                    break;
+                case GestureTrace.RESET:
+                    mEngine.reset();
+                    break;
+                case GestureTrace.JUMP:
+                    mEngine.jumpTo(mReader.getDirection(), mReader.getValue());
+                    break;
+            }
+        }
+
+        return drained();
+    }
+
+    /**
+     * @return the number of inputs fed so far.
+     */
+    public int getInputCount() {
+        return mInputs;
+    }
+
+    /**
+     * @return the number of recorded events matched so far.
+     */
+    public int getEventCount() {
+        return mEvents;
+    }
+
+    /**
+     * @return what differed, or null if nothing did.
+     */
+    public String getMismatch() {
+        return mMismatch;
+    }
+
+    private boolean match(int event, int direction, int value) {
+        if (mPendingStart == mPendingEnd) {
+            mMismatch = "after input " + mInputs + ", expected " + describe(event, direction, value) + " but got nothing";
+            return false;
+        }
+
+        int actualEvent = mPending[mPendingStart];
+        int actualDirection = mPending[mPendingStart + 1];
+        int actualValue = mPending[mPendingStart + 2];
+        mPendingStart += FIELDS;
+
+        if (actualEvent != event || actualDirection != direction || actualValue != value) {
+            mMismatch = "after input " + mInputs + ", expected " + describe(event, direction, value)
+                    + " but got " + describe(actualEvent, actualDirection, actualValue);
+            return false;
+        }
+        mEvents++;
+        return true;
+    }
+
+    private boolean drained() {
+        if (mPendingStart != mPendingEnd) {
+            mMismatch = "after input " + mInputs + ", got " + describe(mPending[mPendingStart], mPending[mPendingStart + 1],
+                    mPending[mPendingStart + 2]) + " which was not recorded";
+            return false;
+        }
+
+        mPendingStart = 0;
+        mPendingEnd = 0;
+        return true;
+    }
+
+    private void add(int event, int direction, int value) {
+        if (mPendingEnd + FIELDS > mPending.length) {
+            int[] pending = new int[mPending.length * 2];
+            System.arraycopy(mPending, 0, pending, 0, mPendingEnd);
+            mPending = pending;
+        }
+
+        mPending[mPendingEnd] = event;
+        mPending[mPendingEnd + 1] = direction;
+        mPending[mPendingEnd + 2] = value;
+        mPendingEnd += FIELDS;
+    }
+
+    private static String describe(int event, int direction, int value) {
+        return GestureTrace.eventName(event) + "(" + direction + ", " + value + ")";
+    }
+
+    private class Collector implements SwipeEngine.Callback {
+        public void onReady() {
+            add(GestureTrace.EVENT_READY, SwipeEngine.SWIPE_STILL, 0);
+            if (mObserver != null) {
+                mObserver.onReady();
+            }
+        }
+
+        public void onStart(int direction, int distance) {
+            add(GestureTrace.EVENT_START, direction, distance);
+            if (mObserver != null) {
+                mObserver.onStart(direction, distance);
+            }
+        }
+
+        public void onMove(int direction, int distance) {
+            add(GestureTrace.EVENT_MOVE, direction, distance);
+            if (mObserver != null) {
+                mObserver.onMove(direction, distance);
+            }
+        }
+
+        public void onSettleStart(int settle, int direction, long timeNanos) {
+            add(GestureTrace.EVENT_SETTLE_START, direction, settle);
+            if (mObserver != null) {
+                mObserver.onSettleStart(settle, direction, timeNanos);
+            }
+        }
+
+        public void onGoCancelling(int direction, int distance) {
+            add(GestureTrace.EVENT_GO_CANCELLING, direction, distance);
+            if (mObserver != null) {
+                mObserver.onGoCancelling(direction, distance);
+            }
+        }
+
+        public void onCancelled(int direction, int distance) {
+            add(GestureTrace.EVENT_CANCELLED, direction, distance);
+            if (mObserver != null) {
+                mObserver.onCancelled(direction, distance);
+            }
+        }
+
+        public void onGoSwiping(int direction, int distance) {
+            add(GestureTrace.EVENT_GO_SWIPING, direction, distance);
+            if (mObserver != null) {
+                mObserver.onGoSwiping(direction, distance);
+            }
+        }
+
+        public void onSwiped(int direction, int distance) {
+            add(GestureTrace.EVENT_SWIPED, direction, distance);
+            if (mObserver != null) {
+                mObserver.onSwiped(direction, distance);
+            }
+        }
+
+        public void onRestored() {
+            add(GestureTrace.EVENT_RESTORED, SwipeEngine.SWIPE_STILL, 0);
+            if (mObserver != null) {
+                mObserver.onRestored();
+            }
+        }
+
+        public void onOffset(int direction, int offset) {
+            add(GestureTrace.EVENT_OFFSET, direction, offset);
+            if (mObserver != null) {
+                mObserver.onOffset(direction, offset);
+            }
+        }
+    }
+}
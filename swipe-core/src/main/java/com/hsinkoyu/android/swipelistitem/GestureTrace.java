@@ -0,0 +1,361 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compact binary trace of what a SwipeEngine went through: its configuration, every input
+ * (touch events with their historical samples, frames, restores) and every event it produced in
+ * return (listener callbacks and offsets), in order.
+ *
+ * Layout: the magic "SWTR", a version byte, then the header:
+ *
+ *   accepted directions (byte), move dispatch mode (byte), swiping thresholds (2 varints),
+ *   fling velocities (2 floats), arbitration mode (byte), touch slop (varint)
+ *
+ * Version 1 traces end their header with the fling velocities, and replay with the thresholds.
+ *
+ * followed by records, each a tag byte and its payload. Times are zigzag varint deltas from the
+ * previous timed record, in nanoseconds; coordinates are floats.
+ *
+ *   SIZE     width, height (varints)
+ *   SAMPLE   time, x, y              historical sample, velocity only
+ *   TOUCH    action (byte), time, x, y
+ *   FRAME    time
+ *   RESTORE  time
+ *   RESET
+ *   JUMP     direction (byte), offset (zigzag varint)
+ *   EVENT    event (byte), direction (byte), value (zigzag varint)
+ *
+ * Events follow the input that caused them. The interpolator is not recorded; a replay uses
+ * whatever its engine is set with.
+ */
+public class GestureTrace {
+    private static final int MAGIC = 0x53575452; // "SWTR"
+    private static final int VERSION = 2;
+
+    // Record tags
+    public static final int SIZE    = 1;
+    public static final int SAMPLE  = 2;
+    public static final int TOUCH   = 3;
+    public static final int FRAME   = 4;
+    public static final int RESTORE = 5;
+    public static final int RESET   = 6;
+    public static final int JUMP    = 7;
+    public static final int EVENT   = 8;
+
+    // Events, with the meaning of their value
+    public static final int EVENT_READY         = 0; // none
+    public static final int EVENT_START         = 1; // distance
+    public static final int EVENT_MOVE          = 2; // distance
+    public static final int EVENT_SETTLE_START  = 3; // SwipeEngine.SETTLE_*
+    public static final int EVENT_GO_CANCELLING = 4; // distance
+    public static final int EVENT_CANCELLED     = 5; // distance
+    public static final int EVENT_GO_SWIPING    = 6; // distance
+    public static final int EVENT_SWIPED        = 7; // distance
+    public static final int EVENT_RESTORED      = 8; // none
+    public static final int EVENT_OFFSET        = 9; // offset
+
+    private static final String[] EVENT_NAMES = {
+            "ready", "start", "move", "settleStart", "goCancelling",
+            "cancelled", "goSwiping", "swiped", "restored", "offset"
+    };
+
+    public static String eventName(int event) {
+        return (event >= 0 && event < EVENT_NAMES.length) ? EVENT_NAMES[event] : "event" + event;
+    }
+
+    /**
+     * Writes a trace. Output is buffered; close() flushes it.
+     */
+    public static class Writer {
+        private final DataOutputStream mOut;
+        private long mLastTime = 0;
+
+        public Writer(OutputStream out) {
+            mOut = new DataOutputStream(new BufferedOutputStream(out));
+        }
+
+        /**
+         * To be written first, with the engine as it is configured.
+         */
+        public void header(SwipeEngine engine) throws IOException {
+            mOut.writeInt(MAGIC);
+            mOut.writeByte(VERSION);
+            mOut.writeByte(engine.getAcceptedDirections());
+            mOut.writeByte(engine.getMoveDispatchMode());
+            writeVarLong(engine.getSwipingThresholdH());
+            writeVarLong(engine.getSwipingThresholdV());
+            mOut.writeFloat(engine.getMinFlingVelocity());
+            mOut.writeFloat(engine.getMaxFlingVelocity());
+            mOut.writeByte(engine.getArbitrationMode());
+            writeVarLong(engine.getTouchSlop());
+            size(engine.getWidth(), engine.getHeight());
+        }
+
+        public void size(int width, int height) throws IOException {
+            mOut.writeByte(SIZE);
+            writeVarLong(width);
+            writeVarLong(height);
+        }
+
+        public void sample(float x, float y, long timeNanos) throws IOException {
+            mOut.writeByte(SAMPLE);
+            writeTime(timeNanos);
+            mOut.writeFloat(x);
+            mOut.writeFloat(y);
+        }
+
+        public void touch(int action, float x, float y, long timeNanos) throws IOException {
+            mOut.writeByte(TOUCH);
+            mOut.writeByte(action);
+            writeTime(timeNanos);
+            mOut.writeFloat(x);
+            mOut.writeFloat(y);
+        }
+
+        public void frame(long timeNanos) throws IOException {
+            mOut.writeByte(FRAME);
+            writeTime(timeNanos);
+        }
+
+        public void restore(long timeNanos) throws IOException {
+            mOut.writeByte(RESTORE);
+            writeTime(timeNanos);
+        }
+
+        public void reset() throws IOException {
+            mOut.writeByte(RESET);
+        }
+
+        public void jump(int direction, int offset) throws IOException {
+            mOut.writeByte(JUMP);
+            mOut.writeByte(direction);
+            writeVarLong(zigzag(offset));
+        }
+
+        public void event(int event, int direction, int value) throws IOException {
+            mOut.writeByte(EVENT);
+            mOut.writeByte(event);
+            mOut.writeByte(direction);
+            writeVarLong(zigzag(value));
+        }
+
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+        public void close() throws IOException {
+            mOut.close();
+        }
+
+        private void writeTime(long timeNanos) throws IOException {
+            writeVarLong(zigzag(timeNanos - mLastTime));
+            mLastTime = timeNanos;
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                mOut.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            mOut.writeByte((int) value);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * Reads a trace one record at a time: next() moves to the following record, whose fields are
+     * then available from the getters. Reading does not allocate.
+     */
+    public static class Reader {
+        private final DataInputStream mIn;
+        private long mLastTime = 0;
+
+        private int mAcceptedDirections;
+        private int mMoveDispatchMode;
+        private int mSwipingThresholdH;
+        private int mSwipingThresholdV;
+        private float mMinFlingVelocity;
+        private float mMaxFlingVelocity;
+        private int mArbitrationMode = SwipeEngine.ARBITRATION_THRESHOLDS;
+        private int mTouchSlop;
+
+        private int mTag;
+        private int mAction; // or event for EVENT
+        private int mDirection;
+        private int mValue; // width for SIZE, offset for JUMP, value for EVENT
+        private int mHeight;
+        private long mTime;
+        private float mX;
+        private float mY;
+
+        /**
+         * Reads the header right away.
+         *
+         * @throws IOException if it is not a trace, or of an unknown version.
+         */
+        public Reader(InputStream in) throws IOException {
+            mIn = new DataInputStream(new BufferedInputStream(in));
+            if (mIn.readInt() != MAGIC) {
+                throw new IOException("Not a gesture trace");
+            }
+            int version = mIn.readUnsignedByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unknown gesture trace version " + version);
+            }
+            mAcceptedDirections = mIn.readUnsignedByte();
+            mMoveDispatchMode = mIn.readUnsignedByte();
+            mSwipingThresholdH = (int) readVarLong();
+            mSwipingThresholdV = (int) readVarLong();
+            mMinFlingVelocity = mIn.readFloat();
+            mMaxFlingVelocity = mIn.readFloat();
+            if (version >= 2) {
+                mArbitrationMode = mIn.readUnsignedByte();
+                mTouchSlop = (int) readVarLong();
+            }
+        }
+
+        /**
+         * Set an engine up as the recorded one was, except for its size which comes as a SIZE record.
+         */
+        public void configure(SwipeEngine engine) {
+            if (engine.getAcceptedDirections() != mAcceptedDirections) {
+                throw new IllegalArgumentException("Engine accepts other directions than the trace");
+            }
+            engine.setMoveDispatchMode(mMoveDispatchMode);
+            engine.setSwipingThresholds(mSwipingThresholdH, mSwipingThresholdV);
+            engine.setFlingVelocities(mMinFlingVelocity, mMaxFlingVelocity);
+            engine.setArbitrationMode(mArbitrationMode);
+            engine.setTouchSlop(mTouchSlop);
+        }
+
+        public int getAcceptedDirections() {
+            return mAcceptedDirections;
+        }
+
+        /**
+         * @return false at the end of the trace.
+         */
+        public boolean next() throws IOException {
+            int tag = mIn.read();
+            if (tag < 0) {
+                return false;
+            }
+
+            mTag = tag;
+            switch (tag) {
+                case SIZE:
+                    mValue = (int) readVarLong();
+                    mHeight = (int) readVarLong();
+                    break;
+                case SAMPLE:
+                    readTime();
+                    mX = mIn.readFloat();
+                    mY = mIn.readFloat();
+                    break;
+                case TOUCH:
+                    mAction = mIn.readUnsignedByte();
+                    readTime();
+                    mX = mIn.readFloat();
+                    mY = mIn.readFloat();
+                    break;
+                case FRAME:
+                case RESTORE:
+                    readTime();
+                    break;
+                case RESET:
+                    break;
+                case JUMP:
+                    mDirection = mIn.readUnsignedByte();
+                    mValue = (int) unzigzag(readVarLong());
+                    break;
+                case EVENT:
+                    mAction = mIn.readUnsignedByte();
+                    mDirection = mIn.readUnsignedByte();
+                    mValue = (int) unzigzag(readVarLong());
+                    break;
+                default:
+                    throw new IOException("Unknown gesture trace record " + tag);
+            }
+            return true;
+        }
+
+        public int getTag() {
+            return mTag;
+        }
+
+        public int getAction() {
+            return mAction;
+        }
+
+        public int getEvent() {
+            return mAction;
+        }
+
+        public int getDirection() {
+            return mDirection;
+        }
+
+        public int getValue() {
+            return mValue;
+        }
+
+        public int getWidth() {
+            return mValue;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        public long getTime() {
+            return mTime;
+        }
+
+        public float getX() {
+            return mX;
+        }
+
+        public float getY() {
+            return mY;
+        }
+
+        public void close() throws IOException {
+            mIn.close();
+        }
+
+        private void readTime() throws IOException {
+            mTime = mLastTime + unzigzag(readVarLong());
+            mLastTime = mTime;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = mIn.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
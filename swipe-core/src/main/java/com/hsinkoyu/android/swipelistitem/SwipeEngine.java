@@ -0,0 +1,643 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+/**
+ * The gesture logic of SwipeListItem with no Android dependency: deciding the direction,
+ * following the pointer, choosing between swiping and cancelling at release, and the settle
+ * animations. It is driven by primitive inputs (action, x, y, time) and frame times, and tells
+ * where the foreground goes and what happened through a Callback.
+ *
+ * SwipeListItem adapts it to the views; on its own it runs on a plain JVM, for tests and
+ * benchmarks. Feeding events or frames never allocates.
+ */
+public class SwipeEngine {
+    public static final int SWIPE_STILL = 0x00;
+    // Accepted directions
+    public static final int SWIPE_UP    = 0x01; // Not supported yet
+    public static final int SWIPE_DOWN  = 0x02; // Not supported yet
+    public static final int SWIPE_LEFT  = 0x04;
+    public static final int SWIPE_RIGHT = 0x08;
+
+    // Same values as MotionEvent
+    public static final int ACTION_DOWN   = 0;
+    public static final int ACTION_UP     = 1;
+    public static final int ACTION_MOVE   = 2;
+    public static final int ACTION_CANCEL = 3;
+
+    // Settle animations
+    public static final int SETTLE_NONE       = 0;
+    public static final int SETTLE_CANCELLING = 1;
+    public static final int SETTLE_SWIPING    = 2;
+    public static final int SETTLE_RESTORING  = 3;
+
+    // How often Callback.onMove() is called
+    public static final int MOVE_DISPATCH_PER_EVENT = 0; // for every ACTION_MOVE
+    public static final int MOVE_DISPATCH_PER_FRAME = 1; // once per frame, with the latest distance
+
+    // How a direction is decided
+    public static final int ARBITRATION_THRESHOLDS = 0; // as soon as the distance along an axis passes its threshold, horizontal first
+    public static final int ARBITRATION_SLOP       = 1; // once, as the pointer leaves the touch slop, by the axis it moved most along
+
+    private static final int DEFAULT_SWIPING_THRESHOLD = 20; // pixels
+    private static final float H_SWIPED_THRESHOLD_RATIO = 1.0f / 2.0f; // half of the list item width
+    private static final float V_SWIPED_THRESHOLD_RATIO = 1.0f / 2.0f; // half of the list item height
+    private static final int MIN_SETTLE_DURATION = 60; // milliseconds
+    private static final int SETTLE_DURATION = 200; // milliseconds to settle across the whole list item width
+    private static final int RESTORING_VIEW_DURATION = 150; // milliseconds to restore from the whole list item width
+    private static final long NANOS_PER_MS = 1000000L;
+
+    public interface Interpolator {
+        public float getInterpolation(float input);
+    }
+
+    // Same curve as android.view.animation.DecelerateInterpolator
+    public static final Interpolator DECELERATE = new Interpolator() {
+        public float getInterpolation(float input) {
+            return 1.0f - (1.0f - input) * (1.0f - input);
+        }
+    };
+
+    public interface Callback {
+        // Touch down
+        public void onReady();
+        // A direction has been decided
+        public void onStart(int direction, int distance);
+        public void onMove(int direction, int distance);
+        // A settle animation begins, SETTLE_CANCELLING, SETTLE_SWIPING or SETTLE_RESTORING
+        public void onSettleStart(int settle, int direction, long timeNanos);
+        public void onGoCancelling(int direction, int distance);
+        public void onCancelled(int direction, int distance);
+        public void onGoSwiping(int direction, int distance);
+        public void onSwiped(int direction, int distance);
+        public void onRestored();
+        // Move the foreground to the offset, along the direction's axis
+        public void onOffset(int direction, int offset);
+    }
+
+    private Callback mCallback;
+    private final VelocityEstimator mVelocity = new VelocityEstimator();
+
+    private int mAcceptedDirections;
+    private int mWidth;
+    private int mHeight;
+    private int mSwipedThresholdH;
+    private int mSwipedThresholdV;
+    private int mSwipingThresholdH = DEFAULT_SWIPING_THRESHOLD;
+    private int mSwipingThresholdV = DEFAULT_SWIPING_THRESHOLD;
+    private float mMinFlingVelocity = Float.MAX_VALUE; // no fling until told
+    private float mMaxFlingVelocity = Float.MAX_VALUE;
+    private Interpolator mInterpolator = DECELERATE;
+    private int mMoveDispatchMode = MOVE_DISPATCH_PER_EVENT;
+    private int mArbitrationMode = ARBITRATION_THRESHOLDS;
+    private int mTouchSlop = DEFAULT_SWIPING_THRESHOLD;
+
+    private float mDownX;
+    private float mDownY;
+    private int mDirection = SWIPE_STILL;
+    private int mOffset = 0;
+    private boolean mDragging = false; // between the direction being decided and the pointer lifted
+    private boolean mYielded = false; // the current gesture was left to the list
+    private boolean mOnCancellingOrSwiping = false;
+    private boolean mOnRestoringView = false;
+    private boolean mMovePending = false;
+    private int mPendingDistance;
+
+    private int mSettleMode = SETTLE_NONE;
+    private int mSettleDirection;
+    private int mSettleFrom;
+    private int mSettleTo;
+    private long mSettleStartTime;
+    private long mSettleDuration;
+
+    public SwipeEngine(int acceptedDirections, Callback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Null callback");
+        }
+
+        mAcceptedDirections = acceptedDirections;
+        mCallback = callback;
+    }
+
+    /**
+     * Replace the callback, to put a GestureRecorder in front of it for instance.
+     */
+    public void setCallback(Callback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Null callback");
+        }
+
+        mCallback = callback;
+    }
+
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mSwipedThresholdH = (int)(mWidth * H_SWIPED_THRESHOLD_RATIO);
+        mSwipedThresholdV = (int)(mHeight * V_SWIPED_THRESHOLD_RATIO);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getAcceptedDirections() {
+        return mAcceptedDirections;
+    }
+
+    /**
+     * Distances, in pixels, the pointer has to travel before a direction is decided.
+     */
+    public void setSwipingThresholds(int horizontal, int vertical) {
+        mSwipingThresholdH = horizontal;
+        mSwipingThresholdV = vertical;
+    }
+
+    public int getSwipingThresholdH() {
+        return mSwipingThresholdH;
+    }
+
+    public int getSwipingThresholdV() {
+        return mSwipingThresholdV;
+    }
+
+    /**
+     * Velocities, in pixels per second, from which a release commits on its own, and beyond which
+     * velocities are not trusted.
+     */
+    public void setFlingVelocities(float min, float max) {
+        mMinFlingVelocity = min;
+        mMaxFlingVelocity = max;
+    }
+
+    public float getMinFlingVelocity() {
+        return mMinFlingVelocity;
+    }
+
+    public float getMaxFlingVelocity() {
+        return mMaxFlingVelocity;
+    }
+
+    /**
+     * Choose between ARBITRATION_THRESHOLDS (the default) and ARBITRATION_SLOP. With the latter,
+     * the gesture is decided once, when the pointer leaves the touch slop around where it went
+     * down: it is swiped along the axis it moved most along, if that direction is accepted, and
+     * is otherwise left for good to whatever scrolls the list, which begins no sooner with the same
+     * slop. The swiping thresholds are not used.
+     */
+    public void setArbitrationMode(int mode) {
+        mArbitrationMode = mode;
+    }
+
+    public int getArbitrationMode() {
+        return mArbitrationMode;
+    }
+
+    /**
+     * Distance, in pixels, the pointer has to leave behind before ARBITRATION_SLOP decides, as
+     * the list's own scrolling slop.
+     */
+    public void setTouchSlop(int slop) {
+        mTouchSlop = slop;
+    }
+
+    public int getTouchSlop() {
+        return mTouchSlop;
+    }
+
+    public void setInterpolator(Interpolator interpolator) {
+        mInterpolator = (interpolator != null) ? interpolator : DECELERATE;
+    }
+
+    public void setMoveDispatchMode(int mode) {
+        mMoveDispatchMode = mode;
+    }
+
+    public int getMoveDispatchMode() {
+        return mMoveDispatchMode;
+    }
+
+    public int getOffset() {
+        return mOffset;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    public int getSettleMode() {
+        return mSettleMode;
+    }
+
+    public boolean isDragging() {
+        return mDragging;
+    }
+
+    public boolean isMovePending() {
+        return mMovePending;
+    }
+
+    /**
+     * The current gesture was decided not to be a swipe, with ARBITRATION_SLOP; it is left to the
+     * list until the pointer goes down again.
+     */
+    public boolean isYielded() {
+        return mYielded;
+    }
+
+    /**
+     * Nothing moving, nothing revealed.
+     */
+    public boolean isIdle() {
+        return mSettleMode == SETTLE_NONE && mDirection == SWIPE_STILL && mOffset == 0 && !mOnRestoringView;
+    }
+
+    /**
+     * The foreground is cancelling, swiping or restoring; touch events are ignored meanwhile.
+     */
+    public boolean isSettling() {
+        return mOnCancellingOrSwiping || mOnRestoringView;
+    }
+
+    /**
+     * A direction has been decided for the current gesture, or the foreground is busy settling.
+     */
+    public boolean isTouchOwner() {
+        return mDirection != SWIPE_STILL || mOnCancellingOrSwiping || mOnRestoringView;
+    }
+
+    /**
+     * @return true while a move waits for a frame or a settle animation runs.
+     */
+    public boolean needsFrame() {
+        return mMovePending || mSettleMode != SETTLE_NONE;
+    }
+
+    /**
+     * A sample only used for the velocity, such as the historical ones batched in a move event.
+     */
+    public void addSample(float x, float y, long timeNanos) {
+        mVelocity.addSample(x, y, timeNanos);
+    }
+
+    /**
+     * @return the velocity of the current gesture along the swiping direction, in pixels per
+     * second, or 0 if there is no gesture.
+     */
+    public float getVelocity() {
+        if (mDirection == SWIPE_STILL) {
+            return 0;
+        }
+
+        mVelocity.computeVelocity(mMaxFlingVelocity);
+        if (mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT) {
+            return mVelocity.getXVelocity();
+        } else {
+            return mVelocity.getYVelocity();
+        }
+    }
+
+    /**
+     * @return false for the actions it does not handle.
+     */
+    public boolean onTouch(int action, float x, float y, long timeNanos) {
+        int xDistance;
+        int yDistance;
+        int distance = 0;
+
+        if (isSettling()) {
+            // During cancelling, swiping or restoring, do nothing to touch events.
+            return true;
+        }
+
+        switch (action) {
+            case ACTION_DOWN:
+                mVelocity.clear();
+                mVelocity.addSample(x, y, timeNanos);
+                mDownX = x;
+                mDownY = y;
+                mDirection = SWIPE_STILL;
+                mYielded = false;
+                mCallback.onReady();
+                break;
+            case ACTION_MOVE:
+                mVelocity.addSample(x, y, timeNanos);
+                xDistance = (int)(x - mDownX);
+                yDistance = (int)(y - mDownY);
+                if (mYielded) {
+                    // Not a swipe
+                } else if (mDirection == SWIPE_STILL && mArbitrationMode == ARBITRATION_SLOP) {
+                    decideOutOfSlop(xDistance, yDistance);
+                } else if (mDirection == SWIPE_STILL) {
+                    // Decide the direction
+                    if ((Math.abs(xDistance) > mSwipingThresholdH) && (xDistance > 0) && ((mAcceptedDirections & SWIPE_RIGHT) != 0)) {
+                        distance = xDistance;
+                        mDirection = SWIPE_RIGHT;
+                    } else if ((Math.abs(xDistance) > mSwipingThresholdH) && (xDistance < 0) && ((mAcceptedDirections & SWIPE_LEFT) != 0)) {
+                        distance = xDistance;
+                        mDirection = SWIPE_LEFT;
+                    } else if ((Math.abs(yDistance) > mSwipingThresholdV) && (yDistance > 0) && ((mAcceptedDirections & SWIPE_DOWN) != 0)) {
+                        distance = yDistance;
+                        mDirection = SWIPE_DOWN;
+                    } else if ((Math.abs(yDistance) > mSwipingThresholdV) && (yDistance < 0) && ((mAcceptedDirections & SWIPE_UP) != 0)) {
+                        distance = yDistance;
+                        mDirection = SWIPE_UP;
+                    }
+
+                    if (mDirection != SWIPE_STILL) {
+                        applyOffset(mDirection, distance);
+                        mDragging = true;
+                        mCallback.onStart(mDirection, distance);
+                    }
+                } else {
+                    if (mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT) {
+                        distance = xDistance;
+                    } else {
+                        distance = yDistance;
+                    }
+
+                    if (mMoveDispatchMode == MOVE_DISPATCH_PER_FRAME) {
+                        mPendingDistance = distance;
+                        mMovePending = true;
+                    } else {
+                        applyOffset(mDirection, distance);
+                        mCallback.onMove(mDirection, distance);
+                    }
+                }
+                break;
+            case ACTION_UP:
+                mVelocity.addSample(x, y, timeNanos);
+                xDistance = (int)(x - mDownX);
+                yDistance = (int)(y - mDownY);
+                if (mDirection != SWIPE_STILL) {
+                    boolean goSwiping = false;
+                    float releaseVelocity;
+
+                    // The last move still waiting for a frame goes out before settling.
+                    flushMove();
+                    mDragging = false;
+
+                    if ((Math.abs(xDistance) > mSwipedThresholdH) && (mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT)) {
+                        goSwiping = true;
+                    } else if ((Math.abs(yDistance) > mSwipedThresholdV) && (mDirection == SWIPE_DOWN || mDirection == SWIPE_UP)) {
+                        goSwiping = true;
+                    }
+
+                    mVelocity.computeVelocity(mMaxFlingVelocity);
+                    float xVelocity = mVelocity.getXVelocity();
+                    float yVelocity = mVelocity.getYVelocity();
+                    if (mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT) {
+                        distance = xDistance;
+                        releaseVelocity = xVelocity;
+                    } else {
+                        distance = yDistance;
+                        releaseVelocity = yVelocity;
+                    }
+
+                    // A fast fling along the swiping axis decides on its own, whatever the distance.
+                    if (Math.abs(releaseVelocity) >= mMinFlingVelocity
+                            && ((mDirection == SWIPE_RIGHT || mDirection == SWIPE_LEFT) ? Math.abs(xVelocity) > Math.abs(yVelocity) : Math.abs(yVelocity) > Math.abs(xVelocity))) {
+                        boolean forward = (mDirection == SWIPE_RIGHT || mDirection == SWIPE_DOWN) ? (releaseVelocity > 0) : (releaseVelocity < 0);
+                        goSwiping = forward;
+                    }
+
+                    mOnCancellingOrSwiping = true;
+                    if (goSwiping) {
+                        goSwiping(distance, releaseVelocity, timeNanos);
+                    } else {
+                        goCancelling(distance, releaseVelocity, timeNanos);
+                    }
+                }
+                break;
+            case ACTION_CANCEL:
+                // The current gesture has been aborted. Treat it as an up event, but do not
+                // perform any action that it normally would.
+                flushMove();
+                mDragging = false;
+                mVelocity.clear();
+                break;
+            default:
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Run a frame: apply the pending move and step the settle animation.
+     *
+     * @return true if another frame is needed.
+     */
+    public boolean doFrame(long frameTimeNanos) {
+        flushMove();
+
+        if (mSettleMode != SETTLE_NONE) {
+            stepSettle(frameTimeNanos);
+        }
+        return needsFrame();
+    }
+
+    /**
+     * Animate the foreground back in place. A running settle animation lands first.
+     */
+    public void restore(long timeNanos) {
+        if (mSettleMode != SETTLE_NONE) {
+            // Let the running animation land before heading back.
+            finishSettle();
+        }
+
+        mOnRestoringView = true;
+
+        if (mOffset > 0) {
+            startSettle(SETTLE_RESTORING, SWIPE_RIGHT, mOffset, 0, RESTORING_VIEW_DURATION, 0, timeNanos);
+        } else if (mOffset < 0) {
+            startSettle(SETTLE_RESTORING, SWIPE_LEFT, mOffset, 0, RESTORING_VIEW_DURATION, 0, timeNanos);
+        } else {
+            onRestored();
+        }
+    }
+
+    /**
+     * Show a state right away, without animation nor callback other than onOffset().
+     */
+    public void jumpTo(int direction, int offset) {
+        applyOffset(direction, offset);
+    }
+
+    /**
+     * Drop the current gesture: a running settle animation lands, a drag is abandoned where it is,
+     * then the foreground is put back in place.
+     */
+    public void reset() {
+        mMovePending = false;
+        mDragging = false;
+        mYielded = false;
+        if (mSettleMode != SETTLE_NONE) {
+            finishSettle();
+        } else if (mDirection != SWIPE_STILL) {
+            mOnCancellingOrSwiping = false;
+            mDirection = SWIPE_STILL;
+        }
+
+        if (mOffset != 0) {
+            applyOffset(mOffset < 0 ? SWIPE_LEFT : SWIPE_RIGHT, 0);
+        }
+        mOnRestoringView = false;
+    }
+
+    /*
+     * The one decision of ARBITRATION_SLOP, taken on the first move out of the slop. A move as
+     * much across as along the axis goes to the list, which scrolls.
+     */
+    private void decideOutOfSlop(int xDistance, int yDistance) {
+        if (xDistance * xDistance + yDistance * yDistance <= mTouchSlop * mTouchSlop) {
+            return;
+        }
+
+        int distance = 0;
+        if (Math.abs(xDistance) > Math.abs(yDistance)) {
+            int direction = (xDistance > 0) ? SWIPE_RIGHT : SWIPE_LEFT;
+            if ((mAcceptedDirections & direction) != 0) {
+                distance = xDistance;
+                mDirection = direction;
+            }
+        } else if (Math.abs(yDistance) > Math.abs(xDistance)) {
+            int direction = (yDistance > 0) ? SWIPE_DOWN : SWIPE_UP;
+            if ((mAcceptedDirections & direction) != 0) {
+                distance = yDistance;
+                mDirection = direction;
+            }
+        }
+
+        if (mDirection == SWIPE_STILL) {
+            mYielded = true;
+            return;
+        }
+        applyOffset(mDirection, distance);
+        mDragging = true;
+        mCallback.onStart(mDirection, distance);
+    }
+
+    private void flushMove() {
+        if (mMovePending) {
+            mMovePending = false;
+            applyOffset(mDirection, mPendingDistance);
+            mCallback.onMove(mDirection, mPendingDistance);
+        }
+    }
+
+    private void goCancelling(int distance, float velocity, long timeNanos) {
+        if (mDirection == SWIPE_LEFT || mDirection == SWIPE_RIGHT) {
+            startSettle(SETTLE_CANCELLING, mDirection, distance, 0, SETTLE_DURATION, velocity, timeNanos);
+        } else {
+            // SWIPE_UP and SWIPE_DOWN are not supported yet.
+        }
+    }
+
+    private void goSwiping(int distance, float velocity, long timeNanos) {
+        if (mDirection == SWIPE_LEFT) {
+            startSettle(SETTLE_SWIPING, mDirection, distance, -mWidth, SETTLE_DURATION, velocity, timeNanos);
+        } else if (mDirection == SWIPE_RIGHT) {
+            startSettle(SETTLE_SWIPING, mDirection, distance, mWidth, SETTLE_DURATION, velocity, timeNanos);
+        } else {
+           // SWIPE_UP and SWIPE_DOWN are not supported yet.
+        }
+    }
+
+    /*
+     * The duration is scaled by the distance to travel, so a short way back settles as fast as a
+     * long one. Every frame computes the offset from the elapsed time instead of moving a fixed
+     * step, which keeps the speed the same whatever the refresh rate or the load of the main thread.
+     *
+     * When the pointer is released moving towards the target, the duration is shortened so the
+     * animation starts at the release velocity: the interpolator's initial slope times the distance
+     * over the duration equals that velocity. The animation is never made slower than the default.
+     */
+    private void startSettle(int mode, int direction, int from, int to, int fullDuration, float velocity, long timeNanos) {
+        int travel = Math.abs(to - from);
+
+        mSettleMode = mode;
+        mSettleDirection = direction;
+        mSettleFrom = from;
+        mSettleTo = to;
+        mSettleDuration = (mWidth > 0) ? fullDuration * NANOS_PER_MS * travel / mWidth : 0;
+        if (travel > 0 && velocity != 0 && (to - from > 0) == (velocity > 0)) {
+            float slope = mInterpolator.getInterpolation(0.01f) / 0.01f;
+            long matched = (long) (slope * travel / Math.abs(velocity) * 1000 * NANOS_PER_MS);
+            mSettleDuration = Math.min(mSettleDuration, Math.max(matched, MIN_SETTLE_DURATION * NANOS_PER_MS));
+        }
+        mSettleStartTime = timeNanos;
+
+        mCallback.onSettleStart(mode, direction, timeNanos);
+        stepSettle(timeNanos);
+    }
+
+    private void stepSettle(long frameTimeNanos) {
+        long elapsed = frameTimeNanos - mSettleStartTime;
+        if (elapsed >= mSettleDuration) {
+            finishSettle();
+            return;
+        }
+
+        float fraction = (elapsed > 0) ? (float) elapsed / mSettleDuration : 0.0f;
+        int distance = mSettleFrom + Math.round((mSettleTo - mSettleFrom) * mInterpolator.getInterpolation(fraction));
+
+        applyOffset(mSettleDirection, distance);
+        if (mSettleMode == SETTLE_CANCELLING) {
+            mCallback.onGoCancelling(mSettleDirection, distance);
+        } else if (mSettleMode == SETTLE_SWIPING) {
+            mCallback.onGoSwiping(mSettleDirection, distance);
+        }
+    }
+
+    private void finishSettle() {
+        int mode = mSettleMode;
+
+        mSettleMode = SETTLE_NONE;
+        applyOffset(mSettleDirection, mSettleTo);
+        if (mode == SETTLE_CANCELLING) {
+            onCancelledOrSwiped();
+            mCallback.onCancelled(mSettleDirection, mSettleTo);
+        } else if (mode == SETTLE_SWIPING) {
+            onCancelledOrSwiped();
+            mCallback.onSwiped(mSettleDirection, mSettleTo);
+        } else if (mode == SETTLE_RESTORING) {
+            onRestored();
+        }
+    }
+
+    private void onCancelledOrSwiped() {
+        mOnCancellingOrSwiping = false;
+        mDirection = SWIPE_STILL;
+    }
+
+    private void onRestored() {
+        mOnRestoringView = false;
+        mDirection = SWIPE_STILL;
+        mCallback.onRestored();
+    }
+
+    private void applyOffset(int direction, int distance) {
+        if (direction == SWIPE_LEFT) {
+            if (distance > 0) {
+                distance = 0;
+            }
+        } else if (direction == SWIPE_RIGHT) {
+            if (distance < 0) {
+                distance = 0;
+            }
+        } else {
+            // SWIPE_UP and SWIPE_DOWN are not supported yet.
+            return;
+        }
+
+        mOffset = distance;
+        mCallback.onOffset(direction, distance);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * hsinkoyu@gmail.com
+ */
+
+package com.hsinkoyu.android.swipelistitem;
+
+/**
+ * Estimates the pointer velocity from its latest samples, like VelocityTracker but without any
+ * framework dependency: a least squares line through the samples of the last 100 ms.
+ *
+ * Samples are kept in a fixed ring buffer, so adding one or computing never allocates.
+ */
+public class VelocityEstimator {
+    private static final int HISTORY_SIZE = 20;
+    private static final long HORIZON = 100 * 1000000L; // nanoseconds
+    private static final long ASSUME_STOPPED = 40 * 1000000L; // nanoseconds without a sample
+
+    private final float[] mX = new float[HISTORY_SIZE];
+    private final float[] mY = new float[HISTORY_SIZE];
+    private final long[] mTime = new long[HISTORY_SIZE];
+    private int mNext;
+    private int mCount;
+
+    private float mXVelocity;
+    private float mYVelocity;
+
+    public void clear() {
+        mNext = 0;
+        mCount = 0;
+        mXVelocity = 0;
+        mYVelocity = 0;
+    }
+
+    public void addSample(float x, float y, long timeNanos) {
+        if (mCount > 0) {
+            long last = mTime[(mNext - 1 + HISTORY_SIZE) % HISTORY_SIZE];
+            if (timeNanos - last > ASSUME_STOPPED) {
+                // The pointer rested for a while, what came before does not tell where it goes.
+                mCount = 0;
+            }
+        }
+
+        mX[mNext] = x;
+        mY[mNext] = y;
+        mTime[mNext] = timeNanos;
+        mNext = (mNext + 1) % HISTORY_SIZE;
+        if (mCount < HISTORY_SIZE) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Compute the velocities returned by getXVelocity() and getYVelocity(), in pixels per second,
+     * each bounded by maxVelocity.
+     */
+    public void computeVelocity(float maxVelocity) {
+        mXVelocity = 0;
+        mYVelocity = 0;
+        if (mCount < 2) {
+            return;
+        }
+
+        int newest = (mNext - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+        long newestTime = mTime[newest];
+
+        // Times are taken relative to the newest sample, in seconds.
+        double sumT = 0, sumX = 0, sumY = 0;
+        int n = 0;
+        for (int i = 0; i < mCount; i++) {
+            int index = (newest - i + HISTORY_SIZE) % HISTORY_SIZE;
+            long age = newestTime - mTime[index];
+            if (age > HORIZON) {
+                break;
+            }
+            sumT += -age / 1e9;
+            sumX += mX[index];
+            sumY += mY[index];
+            n++;
+        }
+        if (n < 2) {
+            return;
+        }
+
+        double meanT = sumT / n, meanX = sumX / n, meanY = sumY / n;
+        double stt = 0, stx = 0, sty = 0;
+        for (int i = 0; i < n; i++) {
+            int index = (newest - i + HISTORY_SIZE) % HISTORY_SIZE;
+            double t = -(newestTime - mTime[index]) / 1e9 - meanT;
+            stt += t * t;
+            stx += t * (mX[index] - meanX);
+            sty += t * (mY[index] - meanY);
+        }
+        if (stt == 0) {
+            return;
+        }
+
+        mXVelocity = clamp((float) (stx / stt), maxVelocity);
+        mYVelocity = clamp((float) (sty / stt), maxVelocity);
+    }
+
+    public float getXVelocity() {
+        return mXVelocity;
+    }
+
+    public float getYVelocity() {
+        return mYVelocity;
+    }
+
+    private static float clamp(float velocity, float max) {
+        return Math.max(-max, Math.min(max, velocity));
+    }
+}
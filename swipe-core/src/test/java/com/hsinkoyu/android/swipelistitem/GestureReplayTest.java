@@ -0,0 +1,140 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class GestureReplayTest {
+    private static final long MS = 1000000L;
+
+    /*
+     * Does nothing, as the engine's own callback while recording.
+     */
+    private static class Idle implements SwipeEngine.Callback {
+        public void onReady() {}
+        public void onStart(int direction, int distance) {}
+        public void onMove(int direction, int distance) {}
+        public void onSettleStart(int settle, int direction, long timeNanos) {}
+        public void onGoCancelling(int direction, int distance) {}
+        public void onCancelled(int direction, int distance) {}
+        public void onGoSwiping(int direction, int distance) {}
+        public void onSwiped(int direction, int distance) {}
+        public void onRestored() {}
+        public void onOffset(int direction, int offset) {}
+    }
+
+    /*
+     * A session as SwipeListItem would record it: a short drag cancelled, a long one swiped with
+     * historical samples, a restore, and a drag abandoned by a reset.
+     */
+    private static byte[] record(int moveDispatchMode) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SwipeEngine engine = new SwipeEngine(SwipeEngine.SWIPE_LEFT | SwipeEngine.SWIPE_RIGHT, new Idle());
+        engine.setSize(1080, 200);
+        engine.setFlingVelocities(2000, 8000);
+        engine.setMoveDispatchMode(moveDispatchMode);
+        GestureRecorder recorder = new GestureRecorder(out);
+        recorder.start(engine, new Idle());
+
+        long t = 1000 * MS;
+        drag(engine, recorder, t, -300, 20);
+        t += 2000 * MS;
+        drag(engine, recorder, t, 700, 40);
+        t += 2000 * MS;
+        recorder.restore(t);
+        engine.restore(t);
+        t = frames(engine, recorder, t);
+
+        recorder.touch(SwipeEngine.ACTION_DOWN, 500, 100, t);
+        engine.onTouch(SwipeEngine.ACTION_DOWN, 500, 100, t);
+        recorder.touch(SwipeEngine.ACTION_MOVE, 400, 100, t + 10 * MS);
+        engine.onTouch(SwipeEngine.ACTION_MOVE, 400, 100, t + 10 * MS);
+        recorder.reset();
+        engine.reset();
+
+        recorder.close();
+        assertNull(recorder.getError());
+        return out.toByteArray();
+    }
+
+    private static void drag(SwipeEngine engine, GestureRecorder recorder, long t, int distance, int moves) {
+        recorder.touch(SwipeEngine.ACTION_DOWN, 500, 100, t);
+        engine.onTouch(SwipeEngine.ACTION_DOWN, 500, 100, t);
+        for (int i = 1; i <= moves; i++) {
+            // A historical sample half way, as batched in a MotionEvent
+            float x = 500 + distance * (i - 0.5f) / moves;
+            recorder.sample(x, 100, t + 4 * MS);
+            engine.addSample(x, 100, t + 4 * MS);
+            t += 8 * MS;
+            x = 500 + distance * i / moves;
+            recorder.touch(SwipeEngine.ACTION_MOVE, x, 100 + (i & 1), t);
+            engine.onTouch(SwipeEngine.ACTION_MOVE, x, 100 + (i & 1), t);
+            if ((i & 1) == 0) {
+                recorder.frame(t);
+                engine.doFrame(t);
+            }
+        }
+        t += 8 * MS;
+        recorder.touch(SwipeEngine.ACTION_UP, 500 + distance, 100, t);
+        engine.onTouch(SwipeEngine.ACTION_UP, 500 + distance, 100, t);
+        frames(engine, recorder, t);
+    }
+
+    private static long frames(SwipeEngine engine, GestureRecorder recorder, long t) {
+        while (engine.needsFrame()) {
+            t += 16 * MS;
+            recorder.frame(t);
+            engine.doFrame(t);
+        }
+        return t;
+    }
+
+    @Test
+    public void replayMatchesRecording() throws IOException {
+        GestureReplay replay = new GestureReplay(new ByteArrayInputStream(record(SwipeEngine.MOVE_DISPATCH_PER_EVENT)));
+        assertTrue(replay.getMismatch(), replay.run());
+        assertTrue(replay.getEventCount() > 100);
+    }
+
+    @Test
+    public void replayMatchesRecordingPerFrame() throws IOException {
+        GestureReplay replay = new GestureReplay(new ByteArrayInputStream(record(SwipeEngine.MOVE_DISPATCH_PER_FRAME)));
+        assertEquals(SwipeEngine.MOVE_DISPATCH_PER_FRAME, replay.getEngine().getMoveDispatchMode());
+        assertTrue(replay.getMismatch(), replay.run());
+    }
+
+    @Test
+    public void replayCatchesChangedThresholds() throws IOException {
+        GestureReplay replay = new GestureReplay(new ByteArrayInputStream(record(SwipeEngine.MOVE_DISPATCH_PER_EVENT)));
+        replay.getEngine().setSwipingThresholds(40, 40);
+        assertFalse(replay.run());
+        assertNotNull(replay.getMismatch());
+    }
+
+    @Test
+    public void replayCatchesChangedInterpolator() throws IOException {
+        GestureReplay replay = new GestureReplay(new ByteArrayInputStream(record(SwipeEngine.MOVE_DISPATCH_PER_EVENT)));
+        replay.getEngine().setInterpolator(new SwipeEngine.Interpolator() {
+            public float getInterpolation(float input) {
+                return input;
+            }
+        });
+        assertFalse(replay.run());
+    }
+
+    @Test
+    public void traceIsCompact() {
+        // Mostly single byte deltas and tags; well under 16 bytes per record on average.
+        byte[] trace = record(SwipeEngine.MOVE_DISPATCH_PER_EVENT);
+        assertTrue(trace.length < 8 * 1024);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new GestureReplay(new ByteArrayInputStream(new byte[] { 'P', 'K', 3, 4, 0, 0 }));
+    }
+}
@@ -0,0 +1,94 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+public class SwipeEngineAllocationTest {
+    private static final long MS = 1000000L;
+    private static final int EVENTS = 10000;
+
+    private static class Idle implements SwipeEngine.Callback {
+        public void onReady() {}
+        public void onStart(int direction, int distance) {}
+        public void onMove(int direction, int distance) {}
+        public void onSettleStart(int settle, int direction, long timeNanos) {}
+        public void onGoCancelling(int direction, int distance) {}
+        public void onCancelled(int direction, int distance) {}
+        public void onGoSwiping(int direction, int distance) {}
+        public void onSwiped(int direction, int distance) {}
+        public void onRestored() {}
+        public void onOffset(int direction, int offset) {}
+    }
+
+    /*
+     * Down, EVENTS - 2 moves back and forth with a historical sample each and a frame every other
+     * one, up, then frames until settled.
+     */
+    private static void drag(SwipeEngine engine) {
+        long t = 0;
+        engine.onTouch(SwipeEngine.ACTION_DOWN, 540, 100, t);
+        for (int i = 1; i <= EVENTS - 2; i++) {
+            float x = 540 - (i % 500);
+            engine.addSample(x + 0.5f, 100, t + 2 * MS);
+            t += 4 * MS;
+            engine.onTouch(SwipeEngine.ACTION_MOVE, x, 100 + (i & 3), t);
+            if ((i & 1) == 0) {
+                engine.doFrame(t);
+            }
+            engine.getVelocity();
+        }
+        t += 4 * MS;
+        engine.onTouch(SwipeEngine.ACTION_UP, 40, 100, t);
+        while (engine.needsFrame()) {
+            t += 16 * MS;
+            engine.doFrame(t);
+        }
+    }
+
+    private static void assertNoAllocation(int moveDispatchMode) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        SwipeEngine engine = new SwipeEngine(SwipeEngine.SWIPE_LEFT | SwipeEngine.SWIPE_RIGHT, new Idle());
+        engine.setSize(1080, 200);
+        engine.setFlingVelocities(2000, 8000);
+        engine.setMoveDispatchMode(moveDispatchMode);
+
+        // Class loading and the like happen on the first run.
+        drag(engine);
+
+        // What reading the counter allocates by itself
+        long first = allocations.getThreadAllocatedBytes(thread);
+        long overhead = allocations.getThreadAllocatedBytes(thread) - first;
+
+        // The JIT kicking in mid-run may cost a few bytes once, so the best of three runs counts.
+        // A single allocation per event would show in every run.
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < 3 && allocated != 0; i++) {
+            long before = allocations.getThreadAllocatedBytes(thread);
+            drag(engine);
+            allocated = Math.min(allocated, allocations.getThreadAllocatedBytes(thread) - before - overhead);
+        }
+
+        assertEquals("bytes allocated by a " + EVENTS + " event drag", 0, allocated);
+    }
+
+    @Test
+    public void dragPerEventAllocatesNothing() {
+        assertNoAllocation(SwipeEngine.MOVE_DISPATCH_PER_EVENT);
+    }
+
+    @Test
+    public void dragPerFrameAllocatesNothing() {
+        assertNoAllocation(SwipeEngine.MOVE_DISPATCH_PER_FRAME);
+    }
+}
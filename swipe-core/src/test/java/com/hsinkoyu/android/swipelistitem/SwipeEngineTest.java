@@ -0,0 +1,162 @@
+package com.hsinkoyu.android.swipelistitem;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SwipeEngineTest {
+    private static final int WIDTH = 1000;
+    private static final long MS = 1000000L;
+
+    private SwipeEngine mEngine;
+    private String mLast;
+    private int mOffset;
+
+    @Before
+    public void setUp() {
+        mEngine = new SwipeEngine(SwipeEngine.SWIPE_LEFT | SwipeEngine.SWIPE_RIGHT, new SwipeEngine.Callback() {
+            public void onReady() { mLast = "ready"; }
+            public void onStart(int direction, int distance) { mLast = "start"; }
+            public void onMove(int direction, int distance) { mLast = "move"; }
+            public void onSettleStart(int settle, int direction, long timeNanos) { mLast = "settle"; }
+            public void onGoCancelling(int direction, int distance) { mLast = "goCancelling"; }
+            public void onCancelled(int direction, int distance) { mLast = "cancelled"; }
+            public void onGoSwiping(int direction, int distance) { mLast = "goSwiping"; }
+            public void onSwiped(int direction, int distance) { mLast = "swiped"; }
+            public void onRestored() { mLast = "restored"; }
+            public void onOffset(int direction, int offset) { mOffset = offset; }
+        });
+        mEngine.setSize(WIDTH, 100);
+        mEngine.setFlingVelocities(5000, 20000);
+    }
+
+    /*
+     * Drag from 500 to the given x in steps of 10 ms, release there, and run frames until settled.
+     */
+    private void drag(int toX, int steps) {
+        long t = 0;
+        mEngine.onTouch(SwipeEngine.ACTION_DOWN, 500, 50, t);
+        for (int i = 1; i <= steps; i++) {
+            t += 10 * MS;
+            mEngine.onTouch(SwipeEngine.ACTION_MOVE, 500 + (toX - 500) * i / steps, 50, t);
+        }
+        t += 10 * MS;
+        mEngine.onTouch(SwipeEngine.ACTION_UP, toX, 50, t);
+        while (mEngine.needsFrame()) {
+            t += 16 * MS;
+            mEngine.doFrame(t);
+        }
+    }
+
+    @Test
+    public void smallMoveDecidesNoDirection() {
+        mEngine.onTouch(SwipeEngine.ACTION_DOWN, 500, 50, 0);
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 490, 50, 10 * MS);
+        assertEquals(SwipeEngine.SWIPE_STILL, mEngine.getDirection());
+        assertFalse(mEngine.isTouchOwner());
+    }
+
+    @Test
+    public void slowShortDragCancels() {
+        drag(200, 30);
+        assertEquals("cancelled", mLast);
+        assertEquals(0, mOffset);
+        assertTrue(mEngine.isIdle());
+    }
+
+    @Test
+    public void dragPastHalfSwipes() {
+        drag(-100, 60);
+        assertEquals("swiped", mLast);
+        assertEquals(-WIDTH, mOffset);
+    }
+
+    @Test
+    public void fastShortFlingSwipes() {
+        drag(800, 3);
+        assertEquals("swiped", mLast);
+        assertEquals(WIDTH, mOffset);
+    }
+
+    @Test
+    public void restoreBringsBack() {
+        drag(-100, 60);
+        mEngine.restore(10000 * MS);
+        while (mEngine.needsFrame()) {
+            mEngine.doFrame(20000 * MS);
+        }
+        assertEquals("restored", mLast);
+        assertEquals(0, mOffset);
+        assertTrue(mEngine.isIdle());
+    }
+
+    @Test
+    public void perFrameDispatchCoalescesMoves() {
+        mEngine.setMoveDispatchMode(SwipeEngine.MOVE_DISPATCH_PER_FRAME);
+        mEngine.onTouch(SwipeEngine.ACTION_DOWN, 500, 50, 0);
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 450, 50, 4 * MS);
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 440, 50, 8 * MS);
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 430, 50, 12 * MS);
+        assertEquals(-50, mOffset);
+        assertTrue(mEngine.needsFrame());
+        mEngine.doFrame(16 * MS);
+        assertEquals("move", mLast);
+        assertEquals(-70, mOffset);
+    }
+
+    @Test
+    public void slopArbitrationSwipesAlongTheDominantAxis() {
+        mEngine.setArbitrationMode(SwipeEngine.ARBITRATION_SLOP);
+        mEngine.setTouchSlop(24);
+        mEngine.onTouch(SwipeEngine.ACTION_DOWN, 500, 50, 0);
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 485, 60, 8 * MS);
+        assertEquals(SwipeEngine.SWIPE_STILL, mEngine.getDirection());
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 475, 62, 16 * MS);
+        assertEquals(SwipeEngine.SWIPE_LEFT, mEngine.getDirection());
+        assertEquals("start", mLast);
+        assertEquals(-25, mOffset);
+        assertFalse(mEngine.isYielded());
+    }
+
+    @Test
+    public void slopArbitrationLeavesScrollsForGood() {
+        mEngine.setArbitrationMode(SwipeEngine.ARBITRATION_SLOP);
+        mEngine.setTouchSlop(24);
+        mEngine.onTouch(SwipeEngine.ACTION_DOWN, 500, 50, 0);
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 480, 30, 8 * MS); // as much across as along
+        assertTrue(mEngine.isYielded());
+        mEngine.onTouch(SwipeEngine.ACTION_MOVE, 300, 30, 16 * MS);
+        assertEquals(SwipeEngine.SWIPE_STILL, mEngine.getDirection());
+        assertFalse(mEngine.isTouchOwner());
+
+        // Until the next gesture
+        mEngine.onTouch(SwipeEngine.ACTION_UP, 300, 30, 24 * MS);
+        mEngine.onTouch(SwipeEngine.ACTION_DOWN, 500, 50, 100 * MS);
+        assertFalse(mEngine.isYielded());
+    }
+
+    @Test
+    public void slopArbitrationLeavesDirectionsNotAccepted() {
+        SwipeEngine engine = new SwipeEngine(SwipeEngine.SWIPE_LEFT, new SwipeEngine.Callback() {
+            public void onReady() {}
+            public void onStart(int direction, int distance) {}
+            public void onMove(int direction, int distance) {}
+            public void onSettleStart(int settle, int direction, long timeNanos) {}
+            public void onGoCancelling(int direction, int distance) {}
+            public void onCancelled(int direction, int distance) {}
+            public void onGoSwiping(int direction, int distance) {}
+            public void onSwiped(int direction, int distance) {}
+            public void onRestored() {}
+            public void onOffset(int direction, int offset) {}
+        });
+        engine.setSize(WIDTH, 100);
+        engine.setArbitrationMode(SwipeEngine.ARBITRATION_SLOP);
+        engine.setTouchSlop(24);
+        engine.onTouch(SwipeEngine.ACTION_DOWN, 500, 50, 0);
+        engine.onTouch(SwipeEngine.ACTION_MOVE, 530, 50, 8 * MS);
+        assertTrue(engine.isYielded());
+        engine.onTouch(SwipeEngine.ACTION_MOVE, 400, 50, 16 * MS);
+        assertEquals(SwipeEngine.SWIPE_STILL, engine.getDirection());
+    }
+}